@@ -25,11 +25,81 @@ abstract class AbstractBlockHasher extends AbstractHasher {
       blockBuf.put(input, inputOffset, copyLength);
       inputOffset += copyLength;
       if (!blockBuf.hasRemaining()) {
-        processBlock(blockBuf);
-        blockBuf.clear();
-        blocksProcessed++;
+        flushBlock();
       }
     }
     return this;
   }
+
+  /*
+   * The primitive puts write straight into blockBuf. While the value fits without filling the
+   * block, that is a single bounds check and store; otherwise it is split byte by byte.
+   */
+
+  @Override
+  public Hasher putByte(byte input) {
+    blockBuf.put(input);
+    if (!blockBuf.hasRemaining()) {
+      flushBlock();
+    }
+    return this;
+  }
+
+  @Override
+  public Hasher putInt(int input) {
+    if (blockBuf.remaining() > Integer.BYTES) {
+      blockBuf.putInt(input);
+    } else {
+      for (int shift = Integer.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+        putByte((byte) (input >>> shift));
+      }
+    }
+    return this;
+  }
+
+  @Override
+  public Hasher putLong(long input) {
+    if (blockBuf.remaining() > Long.BYTES) {
+      blockBuf.putLong(input);
+    } else {
+      for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+        putByte((byte) (input >>> shift));
+      }
+    }
+    return this;
+  }
+
+  @Override
+  public Hasher putChars(CharSequence input) {
+    for (int i = 0, length = input.length(); i < length; i++) {
+      char c = input.charAt(i);
+      if (blockBuf.remaining() > Character.BYTES) {
+        blockBuf.putChar(c);
+      } else {
+        putByte((byte) (c >>> 8));
+        putByte((byte) c);
+      }
+    }
+    return this;
+  }
+
+  @Override
+  public Hasher putBytes(ByteBuffer input) {
+    while (input.hasRemaining()) {
+      int copyLength = Math.min(input.remaining(), blockBuf.remaining());
+      blockBuf.put(blockBuf.position(), input, input.position(), copyLength);
+      blockBuf.position(blockBuf.position() + copyLength);
+      input.position(input.position() + copyLength);
+      if (!blockBuf.hasRemaining()) {
+        flushBlock();
+      }
+    }
+    return this;
+  }
+
+  private void flushBlock() {
+    processBlock(blockBuf);
+    blockBuf.clear();
+    blocksProcessed++;
+  }
 }
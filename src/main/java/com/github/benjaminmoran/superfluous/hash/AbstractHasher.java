@@ -1,10 +1,74 @@
 package com.github.benjaminmoran.superfluous.hash;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Implements the {@code put} methods of {@link Hasher} by encoding values into a scratch array
+ * owned by the hasher, and calling {@link #update(byte[], int, int)} once per value or chunk.
+ * Subclasses which can absorb values directly, such as {@link AbstractBlockHasher}, override them.
+ */
 abstract class AbstractHasher implements Hasher {
+  private static final int SCRATCH_LENGTH = 256;
+  private static final VarHandle INTS =
+      MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+  private static final VarHandle LONGS =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+  private byte[] scratch;
+
+  @Override
+  public Hasher putByte(byte input) {
+    byte[] bytes = scratch();
+    bytes[0] = input;
+    return update(bytes, 0, 1);
+  }
+
+  @Override
+  public Hasher putInt(int input) {
+    byte[] bytes = scratch();
+    INTS.set(bytes, 0, input);
+    return update(bytes, 0, Integer.BYTES);
+  }
+
+  @Override
+  public Hasher putLong(long input) {
+    byte[] bytes = scratch();
+    LONGS.set(bytes, 0, input);
+    return update(bytes, 0, Long.BYTES);
+  }
+
+  @Override
+  public Hasher putChars(CharSequence input) {
+    CharEncoding.putUtf16(this, input, scratch());
+    return this;
+  }
+
+  @Override
+  public Hasher putString(CharSequence input, Charset charset) {
+    Objects.requireNonNull(input);
+    if (!StandardCharsets.UTF_8.equals(charset)) {
+      return Hasher.super.putString(input, charset);
+    }
+    CharEncoding.putUtf8(this, input, scratch());
+    return this;
+  }
+
   @Override
   public Digest digest() {
     return Digest.of(algorithm(), digestBytes());
   }
 
   protected abstract byte[] digestBytes();
+
+  private byte[] scratch() {
+    if (scratch == null) {
+      scratch = new byte[SCRATCH_LENGTH];
+    }
+    return scratch;
+  }
 }
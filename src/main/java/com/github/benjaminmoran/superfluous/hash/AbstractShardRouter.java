@@ -0,0 +1,54 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+
+abstract class AbstractShardRouter<S> implements ShardRouter<S> {
+  protected final HashFunction function;
+  protected final List<S> shards;
+
+  protected AbstractShardRouter(HashFunction function, List<S> shards) {
+    Objects.requireNonNull(function);
+    if (function.digestLength() < Long.BYTES) {
+      throw new IllegalArgumentException("Digest length must be at least 8 bytes");
+    }
+    if (shards.isEmpty()) {
+      throw new IllegalArgumentException("There must be at least one shard");
+    }
+    this.function = function;
+    this.shards = List.copyOf(shards);
+  }
+
+  /**
+   * Maps a 64-bit hash of a key to its shard.
+   */
+  protected abstract S routeHash(long hash);
+
+  @Override
+  public List<S> shards() {
+    return shards;
+  }
+
+  @Override
+  public S route(byte[] key) {
+    return routeHash(function.hash(Objects.requireNonNull(key)).longAt(0));
+  }
+
+  @Override
+  public S route(long key) {
+    return routeHash(Operations.mix64(key));
+  }
+
+  /**
+   * Hashes the UTF-8 encoding of a shard's name followed by a big-endian {@code int}.
+   */
+  protected long hashShardName(S shard, int suffix) {
+    return function.init()
+        .update(shard.toString().getBytes(StandardCharsets.UTF_8))
+        .update(ByteBuffer.allocate(Integer.BYTES).putInt(suffix).array())
+        .digest()
+        .longAt(0);
+  }
+}
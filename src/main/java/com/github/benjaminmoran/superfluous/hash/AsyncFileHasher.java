@@ -0,0 +1,291 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Hashes files with asynchronous reads, overlapping I/O with computation.
+ * <p>
+ * Up to {@code readAhead} reads of {@code bufferSize} bytes are kept in flight at once. As each
+ * read completes, the buffers are passed to a {@link Hasher} in file order, and the buffer is
+ * reused for the next read. On slow storage, the total time approaches the greater of the read time
+ * and the hashing time, rather than their sum.
+ * <p>
+ * Buffers are pooled between files. Instances are thread-safe, and several files may be hashed at
+ * once.
+ * <p>
+ * Basic usage:
+ * <pre>{@code
+ * AsyncFileHasher fileHasher = AsyncFileHasher.of(HashFunctions.sha256(), 1 << 20, 4);
+ * CompletableFuture<Digest> digest = fileHasher.hash(Path.of("large.iso"));
+ * }</pre>
+ */
+public final class AsyncFileHasher {
+  /**
+   * The pool keeps enough buffers for this many files to be hashed at once without allocating.
+   */
+  private static final int POOLED_FILES = 4;
+
+  private final HashFunction function;
+  private final int bufferSize;
+  private final int readAhead;
+  private final BlockingQueue<ByteBuffer> pool;
+
+  private AsyncFileHasher(HashFunction function, int bufferSize, int readAhead) {
+    this.function = function;
+    this.bufferSize = bufferSize;
+    this.readAhead = readAhead;
+    this.pool = new ArrayBlockingQueue<>(POOLED_FILES * readAhead);
+  }
+
+  /**
+   * Creates an asynchronous file hasher.
+   *
+   * @param function   the hash function to apply
+   * @param bufferSize the number of bytes in each read (must be positive)
+   * @param readAhead  the maximum number of reads in flight for each file (must be positive)
+   * @return a file hasher using {@code function}
+   */
+  public static AsyncFileHasher of(HashFunction function, int bufferSize, int readAhead) {
+    Objects.requireNonNull(function);
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("Buffer size must be positive");
+    }
+    if (readAhead <= 0) {
+      throw new IllegalArgumentException("Read-ahead depth must be positive");
+    }
+    return new AsyncFileHasher(function, bufferSize, readAhead);
+  }
+
+  /**
+   * Hashes the contents of a file, running completion handlers in the default thread pool.
+   *
+   * @param file the file to hash
+   * @return a future which completes with the digest of the file, or exceptionally if the file
+   *     cannot be read
+   */
+  public CompletableFuture<Digest> hash(Path file) {
+    return hash(file, null);
+  }
+
+  /**
+   * Hashes the contents of a file, running completion handlers (and so the hashing itself) in the
+   * given executor.
+   *
+   * @param file     the file to hash
+   * @param executor the thread pool for completion handlers, or null for the default pool
+   * @return a future which completes with the digest of the file, or exceptionally if the file
+   *     cannot be read
+   */
+  public CompletableFuture<Digest> hash(Path file, ExecutorService executor) {
+    Objects.requireNonNull(file);
+    AsynchronousFileChannel channel;
+    try {
+      channel = AsynchronousFileChannel.open(file, Set.of(StandardOpenOption.READ), executor);
+    } catch (IOException | RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    long size;
+    try {
+      size = channel.size();
+    } catch (IOException | RuntimeException e) {
+      try {
+        channel.close();
+      } catch (IOException closeException) {
+        e.addSuppressed(closeException);
+      }
+      return CompletableFuture.failedFuture(e);
+    }
+    Job job = new Job(channel, size);
+    job.start();
+    return job.result;
+  }
+
+  private ByteBuffer acquireBuffer() {
+    ByteBuffer buffer = pool.poll();
+    return buffer != null ? buffer.clear() : ByteBuffer.allocate(bufferSize);
+  }
+
+  private void releaseBuffer(ByteBuffer buffer) {
+    pool.offer(buffer);
+  }
+
+  @Override
+  public String toString() {
+    return "AsyncFileHasher{"
+        + "function=" + function
+        + ", bufferSize=" + bufferSize
+        + ", readAhead=" + readAhead
+        + '}';
+  }
+
+  /**
+   * The state of hashing one file. Reads are numbered by sequence; read {@code s} covers the bytes
+   * from {@code s * bufferSize}. Since a new read is only started after the oldest one is hashed,
+   * the reads in flight always fit in a ring of {@code readAhead} slots.
+   */
+  private final class Job implements CompletionHandler<Integer, Job.Read> {
+    final CompletableFuture<Digest> result = new CompletableFuture<>();
+    private final AsynchronousFileChannel channel;
+    private final long size;
+    private final long readCount;
+    private final Hasher hasher;
+    /**
+     * Completed reads waiting to be hashed, indexed by sequence modulo {@code readAhead}.
+     */
+    private final ByteBuffer[] completed;
+    private long nextRead;
+    private long nextHash;
+    private boolean draining;
+
+    Job(AsynchronousFileChannel channel, long size) {
+      this.channel = channel;
+      this.size = size;
+      this.readCount = (size + bufferSize - 1) / bufferSize;
+      this.hasher = function.init();
+      this.completed = new ByteBuffer[readAhead];
+    }
+
+    void start() {
+      if (readCount == 0) {
+        finish();
+        return;
+      }
+      long initialReads;
+      synchronized (this) {
+        initialReads = Math.min(readAhead, readCount);
+        nextRead = initialReads;
+      }
+      for (long sequence = 0; sequence < initialReads; sequence++) {
+        startRead(sequence, acquireBuffer());
+      }
+    }
+
+    private void startRead(long sequence, ByteBuffer buffer) {
+      long position = sequence * bufferSize;
+      buffer.clear().limit((int) Math.min(bufferSize, size - position));
+      readMore(new Read(sequence, buffer));
+    }
+
+    private void readMore(Read read) {
+      long position = read.sequence * bufferSize + read.buffer.position();
+      try {
+        channel.read(read.buffer, position, read, this);
+      } catch (RuntimeException e) {
+        fail(e);
+      }
+    }
+
+    @Override
+    public void completed(Integer bytesRead, Read read) {
+      if (bytesRead < 0) {
+        fail(new EOFException("File was truncated while hashing"));
+        return;
+      }
+      if (read.buffer.hasRemaining()) {
+        readMore(read);
+        return;
+      }
+      synchronized (this) {
+        completed[(int) (read.sequence % readAhead)] = read.buffer;
+      }
+      drain();
+    }
+
+    @Override
+    public void failed(Throwable exc, Read read) {
+      fail(exc);
+    }
+
+    /**
+     * Hashes completed reads in order until the next one is still in flight. Only one thread
+     * drains at a time; others deposit their buffers and leave.
+     */
+    private void drain() {
+      synchronized (this) {
+        if (draining) {
+          return;
+        }
+        draining = true;
+      }
+      while (true) {
+        ByteBuffer buffer;
+        long sequence;
+        synchronized (this) {
+          int slot = (int) (nextHash % readAhead);
+          buffer = completed[slot];
+          if (buffer == null || result.isDone()) {
+            draining = false;
+            return;
+          }
+          completed[slot] = null;
+          sequence = nextHash++;
+        }
+        try {
+          hasher.update(buffer.array(), buffer.arrayOffset(), buffer.position());
+        } catch (RuntimeException e) {
+          fail(e);
+          return;
+        }
+        if (sequence == readCount - 1) {
+          releaseBuffer(buffer);
+          finish();
+          return;
+        }
+        long next;
+        synchronized (this) {
+          next = nextRead < readCount ? nextRead++ : -1;
+        }
+        if (next >= 0) {
+          startRead(next, buffer);
+        } else {
+          releaseBuffer(buffer);
+        }
+      }
+    }
+
+    private void finish() {
+      try {
+        result.complete(hasher.digest());
+      } catch (RuntimeException e) {
+        result.completeExceptionally(e);
+      }
+      close();
+    }
+
+    private void fail(Throwable exc) {
+      if (result.completeExceptionally(exc)) {
+        close();
+      }
+    }
+
+    private void close() {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        // The result is already decided, and nothing was written
+      }
+    }
+
+    private final class Read {
+      final long sequence;
+      final ByteBuffer buffer;
+
+      Read(long sequence, ByteBuffer buffer) {
+        this.sequence = sequence;
+        this.buffer = buffer;
+      }
+    }
+  }
+}
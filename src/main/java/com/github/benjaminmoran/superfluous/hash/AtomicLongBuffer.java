@@ -0,0 +1,128 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A fixed-length array of {@code long}s stored outside the heap, supporting atomic updates.
+ * <p>
+ * The storage is either anonymous direct memory or a memory-mapped region of a file. Elements are
+ * stored little-endian so that a mapped file has the same layout on every platform.
+ */
+final class AtomicLongBuffer {
+  private static final VarHandle LONGS =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+  private final ByteBuffer buf;
+  private final int length;
+
+  private AtomicLongBuffer(ByteBuffer buf) {
+    if (buf.alignmentOffset(0, Long.BYTES) != 0) {
+      throw new IllegalStateException("Buffer is not aligned for atomic access");
+    }
+    this.buf = buf;
+    this.length = buf.capacity() / Long.BYTES;
+  }
+
+  /**
+   * Allocates a zeroed buffer in direct memory.
+   *
+   * @param length the number of elements
+   * @return a new buffer
+   */
+  static AtomicLongBuffer allocate(int length) {
+    return new AtomicLongBuffer(ByteBuffer.allocateDirect(checkLength(length) * Long.BYTES));
+  }
+
+  /**
+   * Maps a region of a file as a buffer. Regions beyond the end of the file are zero-filled.
+   *
+   * @param channel  a channel opened for reading and writing
+   * @param position the byte offset of the first element in the file
+   * @param length   the number of elements
+   * @return a buffer backed by the file
+   * @throws IOException if the region cannot be mapped
+   */
+  static AtomicLongBuffer map(FileChannel channel, long position, int length)
+      throws IOException {
+    long size = (long) checkLength(length) * Long.BYTES;
+    return new AtomicLongBuffer(channel.map(FileChannel.MapMode.READ_WRITE, position, size));
+  }
+
+  /**
+   * Creates a new zero-filled file and maps the whole of it as a buffer.
+   *
+   * @param file   the file to create, which must not already exist
+   * @param length the number of elements
+   * @return a buffer backed by the file
+   * @throws IOException if the file cannot be created or mapped
+   */
+  static AtomicLongBuffer createFile(Path file, int length) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      return map(channel, 0L, length);
+    }
+  }
+
+  /**
+   * Maps the whole of an existing file as a buffer.
+   *
+   * @param file the file to open, whose size must be a multiple of 8 bytes
+   * @return a buffer backed by the file
+   * @throws IOException if the file cannot be opened or mapped, or has an invalid size
+   */
+  static AtomicLongBuffer openFile(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      long size = channel.size();
+      if (size % Long.BYTES != 0 || size / Long.BYTES > Integer.MAX_VALUE / Long.BYTES) {
+        throw new IOException("Invalid file size: " + size);
+      }
+      return map(channel, 0L, (int) (size / Long.BYTES));
+    }
+  }
+
+  private static int checkLength(int length) {
+    if (length <= 0 || length > Integer.MAX_VALUE / Long.BYTES) {
+      throw new IllegalArgumentException("Length out of range: " + length);
+    }
+    return length;
+  }
+
+  int length() {
+    return length;
+  }
+
+  long get(int index) {
+    return (long) LONGS.getAcquire(buf, Long.BYTES * index);
+  }
+
+  void set(int index, long value) {
+    LONGS.setRelease(buf, Long.BYTES * index, value);
+  }
+
+  boolean compareAndSet(int index, long expectedValue, long newValue) {
+    return LONGS.compareAndSet(buf, Long.BYTES * index, expectedValue, newValue);
+  }
+
+  long getAndBitwiseOr(int index, long mask) {
+    return (long) LONGS.getAndBitwiseOr(buf, Long.BYTES * index, mask);
+  }
+
+  /**
+   * Writes any changes to a memory-mapped buffer back to its file. Does nothing for a buffer in
+   * direct memory.
+   */
+  void force() {
+    if (buf instanceof MappedByteBuffer) {
+      ((MappedByteBuffer) buf).force();
+    }
+  }
+}
@@ -0,0 +1,268 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * One segment of the index of a {@link BlobStore}: a memory-mapped open-addressing hash table from
+ * digests to blob locations.
+ * <p>
+ * The file consists of a 32-byte header followed by an array of slots. Each slot holds a state
+ * ({@code int}), pack number ({@code int}), offset ({@code long}), length ({@code long}) and the
+ * digest, padded to a multiple of 8 bytes. Collisions are resolved by linear probing, and deleted
+ * slots are left as tombstones until the table is rebuilt.
+ * <p>
+ * Callers must hold {@link #lock}: the read lock for lookups and the write lock for changes.
+ */
+final class BlobIndexSegment {
+  private static final int MAGIC = 0x53464958; // "SFIX"
+  private static final int HEADER_SIZE = 32;
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final double MAX_LOAD = 0.75;
+
+  private static final int EMPTY = 0;
+  private static final int LIVE = 1;
+  private static final int DELETED = 2;
+
+  private static final int STATE = 0;
+  private static final int PACK = 4;
+  private static final int OFFSET = 8;
+  private static final int LENGTH = 16;
+  private static final int DIGEST = 24;
+
+  /**
+   * Receives the live entries of a segment.
+   */
+  interface EntryVisitor {
+    void visit(Digest digest, int pack, long offset, long length);
+  }
+
+  final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Path file;
+  private final HashFunction function;
+  private final int slotSize;
+  private MappedByteBuffer table;
+  private int capacity;
+  private int mask;
+  /**
+   * The number of live entries.
+   */
+  private int size;
+  /**
+   * The number of live entries and tombstones, which both lengthen probe sequences.
+   */
+  private int used;
+
+  private BlobIndexSegment(Path file, HashFunction function) {
+    this.file = file;
+    this.function = function;
+    this.slotSize = (DIGEST + function.digestLength() + Long.BYTES - 1) & -Long.BYTES;
+  }
+
+  /**
+   * Opens a segment file, creating an empty one if it does not exist.
+   *
+   * @throws IOException if the file cannot be read or was created for a different hash function
+   */
+  static BlobIndexSegment open(Path file, HashFunction function) throws IOException {
+    BlobIndexSegment segment = new BlobIndexSegment(file, function);
+    if (Files.exists(file)) {
+      segment.load();
+    } else {
+      segment.rebuild(INITIAL_CAPACITY);
+    }
+    return segment;
+  }
+
+  private void load() throws IOException {
+    try (FileChannel channel = FileChannel.open(file,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+      if (mapped.capacity() < HEADER_SIZE || mapped.getInt(0) != MAGIC
+          || mapped.getInt(4) != function.digestLength()) {
+        throw new IOException("Not an index segment for " + function + ": " + file);
+      }
+      int fileCapacity = mapped.getInt(8);
+      if (Integer.bitCount(fileCapacity) != 1
+          || mapped.capacity() != HEADER_SIZE + (long) fileCapacity * slotSize) {
+        throw new IOException("Corrupt index segment: " + file);
+      }
+      table = mapped;
+      capacity = fileCapacity;
+      mask = capacity - 1;
+      size = mapped.getInt(12);
+      used = mapped.getInt(16);
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * {@return the slot holding the live entry for {@code digest}, or -1 if there is none}
+   */
+  int find(Digest digest) {
+    for (int slot = home(digest); ; slot = (slot + 1) & mask) {
+      int base = base(slot);
+      int state = table.getInt(base + STATE);
+      if (state == EMPTY) {
+        return -1;
+      }
+      if (state == LIVE && digest.matches(table, base + DIGEST)) {
+        return slot;
+      }
+    }
+  }
+
+  int pack(int slot) {
+    return table.getInt(base(slot) + PACK);
+  }
+
+  long offset(int slot) {
+    return table.getLong(base(slot) + OFFSET);
+  }
+
+  long length(int slot) {
+    return table.getLong(base(slot) + LENGTH);
+  }
+
+  /**
+   * Adds an entry, unless one already exists for {@code digest}.
+   *
+   * @return true if the entry was added; false if {@code digest} was already present
+   * @throws IOException if the table had to grow and its file could not be rewritten
+   */
+  boolean insert(Digest digest, int pack, long offset, long length) throws IOException {
+    if (find(digest) >= 0) {
+      return false;
+    }
+    if (used + 1 > capacity * MAX_LOAD) {
+      // Rebuilding drops tombstones, so only grow if live entries alone need the room
+      rebuild(size + 1 > capacity * MAX_LOAD / 2 ? 2 * capacity : capacity);
+    }
+    int slot = home(digest);
+    while (table.getInt(base(slot) + STATE) == LIVE) {
+      slot = (slot + 1) & mask;
+    }
+    if (table.getInt(base(slot) + STATE) == EMPTY) {
+      used++;
+    }
+    write(table, base(slot), digest, pack, offset, length);
+    size++;
+    writeCounts();
+    return true;
+  }
+
+  /**
+   * Points a live entry at a new copy of its blob.
+   */
+  void relocate(int slot, int pack, long offset) {
+    int base = base(slot);
+    table.putInt(base + PACK, pack);
+    table.putLong(base + OFFSET, offset);
+  }
+
+  /**
+   * Replaces a live entry with a tombstone.
+   */
+  void delete(int slot) {
+    table.putInt(base(slot) + STATE, DELETED);
+    size--;
+    writeCounts();
+  }
+
+  /**
+   * Calls {@code visitor} for every live entry.
+   */
+  void forEach(EntryVisitor visitor) {
+    for (int slot = 0; slot < capacity; slot++) {
+      int base = base(slot);
+      if (table.getInt(base + STATE) == LIVE) {
+        visitor.visit(readDigest(base), pack(slot), offset(slot), length(slot));
+      }
+    }
+  }
+
+  void force() {
+    table.force();
+  }
+
+  private int base(int slot) {
+    return HEADER_SIZE + slot * slotSize;
+  }
+
+  private int home(Digest digest) {
+    // The leading bits of the digest choose the segment, so use the next ones here
+    return (int) digest.longAt(Long.BYTES) & mask;
+  }
+
+  private Digest readDigest(int base) {
+    byte[] bytes = new byte[function.digestLength()];
+    table.get(base + DIGEST, bytes);
+    return Digest.of(function, bytes);
+  }
+
+  private void write(
+      MappedByteBuffer buffer, int base, Digest digest, int pack, long offset, long length) {
+    buffer.putInt(base + PACK, pack);
+    buffer.putLong(base + OFFSET, offset);
+    buffer.putLong(base + LENGTH, length);
+    digest.writeTo(buffer, base + DIGEST);
+    buffer.putInt(base + STATE, LIVE);
+  }
+
+  private void writeCounts() {
+    table.putInt(12, size);
+    table.putInt(16, used);
+  }
+
+  /**
+   * Copies the live entries into a new file with the given capacity, then atomically replaces the
+   * old file with it.
+   */
+  private void rebuild(int newCapacity) throws IOException {
+    long fileSize = HEADER_SIZE + (long) newCapacity * slotSize;
+    if (fileSize > Integer.MAX_VALUE) {
+      throw new IOException("Index segment is full: " + file);
+    }
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    MappedByteBuffer newTable;
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      newTable = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+    }
+    int newMask = newCapacity - 1;
+    for (int slot = 0; slot < capacity; slot++) {
+      int base = base(slot);
+      if (table.getInt(base + STATE) != LIVE) {
+        continue;
+      }
+      Digest digest = readDigest(base);
+      int newSlot = (int) digest.longAt(Long.BYTES) & newMask;
+      while (newTable.getInt(HEADER_SIZE + newSlot * slotSize + STATE) != EMPTY) {
+        newSlot = (newSlot + 1) & newMask;
+      }
+      write(newTable, HEADER_SIZE + newSlot * slotSize, digest, pack(slot), offset(slot),
+          length(slot));
+    }
+    newTable.putInt(0, MAGIC);
+    newTable.putInt(4, function.digestLength());
+    newTable.putInt(8, newCapacity);
+    newTable.putInt(12, size);
+    newTable.putInt(16, size);
+    newTable.force();
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+    table = newTable;
+    capacity = newCapacity;
+    mask = newMask;
+    used = size;
+  }
+}
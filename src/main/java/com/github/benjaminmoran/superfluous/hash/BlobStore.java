@@ -0,0 +1,613 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A content-addressable store of immutable blobs, keyed by their digests.
+ * <p>
+ * Blobs are appended to large pack files, and hashed in the same pass as they are written. An
+ * index maps each digest to the pack, offset and length of its blob. The index is split into
+ * segments by the leading bits of the digest; each segment is a memory-mapped open-addressing hash
+ * table with its own lock. Several packs are open for writing at once, each with its own lock, so
+ * concurrent writers rarely wait for one another. Every read is verified against the digest.
+ * <p>
+ * Deleted blobs leave garbage in their packs. {@link #compact()} copies the live blobs out of
+ * mostly-empty packs and deletes them; it can run in the background while the store is in use.
+ * <p>
+ * The directory must not be shared with another open store. Instances are thread-safe.
+ * <p>
+ * Basic usage:
+ * <pre>{@code
+ * try (BlobStore store = BlobStore.open(Path.of("blobs"), HashFunctions.sha256())) {
+ *   Digest digest = store.put("Hello, world!".getBytes());
+ *   Optional<byte[]> blob = store.get(digest);
+ * }
+ * }</pre>
+ */
+public final class BlobStore implements Closeable {
+  private static final int SEGMENT_BITS = 4;
+  private static final int WRITERS = 4;
+  private static final int COPY_BUFFER_SIZE = 64 * 1024;
+  private static final long DEFAULT_MAX_PACK_SIZE = 1L << 30;
+  /**
+   * Packs with less than this fraction of live bytes are compacted.
+   */
+  private static final double COMPACTION_THRESHOLD = 0.5;
+  private static final String PACK_PREFIX = "pack-";
+  private static final String PACK_SUFFIX = ".pack";
+
+  private final Path directory;
+  private final HashFunction function;
+  private final long maxPackSize;
+  private final BlobIndexSegment[] segments;
+  private final Writer[] writers;
+  private final ConcurrentMap<Integer, Pack> packs;
+  private final AtomicInteger nextPackId;
+  private final AtomicInteger nextWriter;
+  private final Object compactionLock = new Object();
+
+  private BlobStore(Path directory, HashFunction function, long maxPackSize,
+      BlobIndexSegment[] segments, ConcurrentMap<Integer, Pack> packs, int nextPackId) {
+    this.directory = directory;
+    this.function = function;
+    this.maxPackSize = maxPackSize;
+    this.segments = segments;
+    this.packs = packs;
+    this.nextPackId = new AtomicInteger(nextPackId);
+    this.nextWriter = new AtomicInteger();
+    this.writers = new Writer[WRITERS];
+    for (int i = 0; i < WRITERS; i++) {
+      writers[i] = new Writer();
+    }
+  }
+
+  /**
+   * Opens a blob store with the default maximum pack size of 1 GiB, creating it if the directory
+   * is empty or does not exist.
+   *
+   * @param directory the directory holding the store's files
+   * @param function  the hash function which keys the blobs (digests must be at least 16 bytes)
+   * @return the store
+   * @throws IOException if the store cannot be opened
+   */
+  public static BlobStore open(Path directory, HashFunction function) throws IOException {
+    return open(directory, function, DEFAULT_MAX_PACK_SIZE);
+  }
+
+  /**
+   * Opens a blob store, creating it if the directory is empty or does not exist.
+   *
+   * @param directory   the directory holding the store's files
+   * @param function    the hash function which keys the blobs (digests must be at least 16 bytes)
+   * @param maxPackSize the size after which a new pack file is started (must be positive); a
+   *                    single blob larger than this is stored in a pack of its own, so it is a
+   *                    soft limit
+   * @return the store
+   * @throws IOException if the store cannot be opened
+   */
+  public static BlobStore open(Path directory, HashFunction function, long maxPackSize)
+      throws IOException {
+    Objects.requireNonNull(directory);
+    Objects.requireNonNull(function);
+    if (function.digestLength() < 2 * Long.BYTES) {
+      throw new IllegalArgumentException("Digest length must be at least 16 bytes");
+    }
+    if (maxPackSize <= 0) {
+      throw new IllegalArgumentException("Maximum pack size must be positive");
+    }
+    Files.createDirectories(directory);
+
+    BlobIndexSegment[] segments = new BlobIndexSegment[1 << SEGMENT_BITS];
+    for (int i = 0; i < segments.length; i++) {
+      Path file = directory.resolve(String.format("index-%02x.idx", i));
+      segments[i] = BlobIndexSegment.open(file, function);
+    }
+
+    ConcurrentMap<Integer, Pack> packs = new ConcurrentHashMap<>();
+    int maxPackId = -1;
+    try (DirectoryStream<Path> stream =
+        Files.newDirectoryStream(directory, PACK_PREFIX + "*" + PACK_SUFFIX)) {
+      for (Path file : stream) {
+        String name = file.getFileName().toString();
+        int id;
+        try {
+          id = Integer.parseInt(
+              name.substring(PACK_PREFIX.length(), name.length() - PACK_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+          throw new IOException("Malformed pack file name: " + file, e);
+        }
+        if (id < 0) {
+          throw new IOException("Malformed pack file name: " + file);
+        }
+        packs.put(id, new Pack(id, FileChannel.open(file, StandardOpenOption.READ)));
+        maxPackId = Math.max(maxPackId, id);
+      }
+    }
+
+    // Recount the live bytes in each pack, which determines when it is worth compacting
+    for (BlobIndexSegment segment : segments) {
+      segment.forEach((digest, pack, offset, length) -> {
+        Pack p = packs.get(pack);
+        if (p != null) {
+          p.liveBytes.addAndGet(length);
+        }
+      });
+    }
+    return new BlobStore(directory, function, maxPackSize, segments, packs, maxPackId + 1);
+  }
+
+  /**
+   * {@return the hash function which keys the blobs in this store}
+   */
+  public HashFunction function() {
+    return function;
+  }
+
+  /**
+   * Stores a blob, unless an identical one is already present.
+   *
+   * @param blob the contents of the blob
+   * @return the digest which identifies the blob
+   * @throws IOException if the blob cannot be written
+   */
+  public Digest put(byte[] blob) throws IOException {
+    return put(Objects.requireNonNull(blob), blob.length);
+  }
+
+  private Digest put(byte[] blob, int length) throws IOException {
+    Digest digest = function.hash(blob, 0, length);
+    if (contains(digest)) {
+      return digest;
+    }
+    Writer writer = acquireWriter();
+    try {
+      Pack pack = writer.pack(length);
+      long offset = pack.size;
+      writeFully(pack.channel, ByteBuffer.wrap(blob, 0, length), offset);
+      commit(pack, digest, offset, length);
+      return digest;
+    } finally {
+      writer.lock.unlock();
+    }
+  }
+
+  /**
+   * Stores a blob read from a stream, hashing it while it is written, unless an identical one is
+   * already present. The stream is read to its end but not closed.
+   * <p>
+   * A blob which does not fit in one copy buffer has an unknown length when writing starts, so it
+   * begins a new pack unless the current one is empty. Such a blob may exceed the maximum pack
+   * size, which is a soft limit for streamed blobs.
+   *
+   * @param blob the contents of the blob
+   * @return the digest which identifies the blob
+   * @throws IOException if the blob cannot be read or written
+   */
+  public Digest put(InputStream blob) throws IOException {
+    Objects.requireNonNull(blob);
+    byte[] buffer = new byte[COPY_BUFFER_SIZE];
+    int read = blob.readNBytes(buffer, 0, buffer.length);
+    if (read < buffer.length) {
+      return put(buffer, read);
+    }
+    Hasher hasher = function.init();
+    Writer writer = acquireWriter();
+    try {
+      // Asking for a whole pack's worth of space starts a new pack unless the current one is empty
+      Pack pack = writer.pack(maxPackSize);
+      long offset = pack.size;
+      long length = 0L;
+      do {
+        hasher.update(buffer, 0, read);
+        writeFully(pack.channel, ByteBuffer.wrap(buffer, 0, read), offset + length);
+        length += read;
+      } while ((read = blob.read(buffer)) >= 0);
+      Digest digest = hasher.digest();
+      commit(pack, digest, offset, length);
+      return digest;
+    } finally {
+      writer.lock.unlock();
+    }
+  }
+
+  /**
+   * Indexes a blob just appended to the tail of {@code pack}, or discards it if a concurrent writer
+   * stored the same blob first. Must be called while holding the pack's writer lock.
+   */
+  private void commit(Pack pack, Digest digest, long offset, long length) throws IOException {
+    BlobIndexSegment segment = segment(digest);
+    boolean inserted;
+    segment.lock.writeLock().lock();
+    try {
+      inserted = segment.insert(digest, pack.id, offset, length);
+    } finally {
+      segment.lock.writeLock().unlock();
+    }
+    if (inserted) {
+      pack.size = offset + length;
+      pack.liveBytes.addAndGet(length);
+    } else {
+      pack.channel.truncate(offset);
+    }
+  }
+
+  /**
+   * Reads a blob and verifies it against its digest.
+   *
+   * @param digest the digest which identifies the blob
+   * @return the contents of the blob, or an empty {@code Optional} if it is not present
+   * @throws IOException if the blob cannot be read or does not match its digest
+   */
+  public Optional<byte[]> get(Digest digest) throws IOException {
+    BlobIndexSegment segment = segment(digest);
+    while (true) {
+      Pack pack;
+      long offset;
+      long length;
+      // Look up the location under the lock, but read without it so commits are not held up
+      segment.lock.readLock().lock();
+      try {
+        int slot = segment.find(digest);
+        if (slot < 0) {
+          return Optional.empty();
+        }
+        length = segment.length(slot);
+        if (length > Integer.MAX_VALUE) {
+          throw new IOException("Blob is too large to read into an array: " + digest);
+        }
+        pack = packs.get(segment.pack(slot));
+        if (pack == null) {
+          throw new IOException("Pack file is missing for blob: " + digest);
+        }
+        offset = segment.offset(slot);
+      } finally {
+        segment.lock.readLock().unlock();
+      }
+      byte[] blob = new byte[(int) length];
+      try {
+        readFully(pack.channel, ByteBuffer.wrap(blob), offset);
+      } catch (ClosedChannelException e) {
+        // Compaction relocated the blob and closed its old pack after the lookup, so look again.
+        // A pack still in the map was closed with the store, and an interrupt is the caller's.
+        if (e instanceof ClosedByInterruptException || packs.get(pack.id) == pack) {
+          throw e;
+        }
+        continue;
+      }
+      if (!digest.equals(function.hash(blob))) {
+        throw new IOException("Blob does not match its digest: " + digest);
+      }
+      return Optional.of(blob);
+    }
+  }
+
+  /**
+   * Tests whether a blob is present, without reading it.
+   *
+   * @param digest the digest which identifies the blob
+   * @return true if the blob is present; false otherwise
+   */
+  public boolean contains(Digest digest) {
+    BlobIndexSegment segment = segment(digest);
+    segment.lock.readLock().lock();
+    try {
+      return segment.find(digest) >= 0;
+    } finally {
+      segment.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Removes a blob. Its space is reclaimed when its pack is compacted.
+   *
+   * @param digest the digest which identifies the blob
+   * @return true if the blob was present; false otherwise
+   * @throws IOException if the pack file holding the blob is missing
+   */
+  public boolean delete(Digest digest) throws IOException {
+    BlobIndexSegment segment = segment(digest);
+    segment.lock.writeLock().lock();
+    try {
+      int slot = segment.find(digest);
+      if (slot < 0) {
+        return false;
+      }
+      Pack pack = packs.get(segment.pack(slot));
+      if (pack == null) {
+        throw new IOException("Pack file is missing for blob: " + digest);
+      }
+      pack.liveBytes.addAndGet(-segment.length(slot));
+      segment.delete(slot);
+      return true;
+    } finally {
+      segment.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * {@return the number of blobs in this store}
+   */
+  public long size() {
+    long size = 0;
+    for (BlobIndexSegment segment : segments) {
+      segment.lock.readLock().lock();
+      try {
+        size += segment.size();
+      } finally {
+        segment.lock.readLock().unlock();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Copies the live blobs out of packs which are mostly garbage, then deletes those packs.
+   * <p>
+   * Reads and writes may continue while this method runs. Packs currently open for writing are
+   * never compacted.
+   *
+   * @return the number of packs deleted
+   * @throws IOException if a pack cannot be copied or deleted
+   */
+  public int compact() throws IOException {
+    synchronized (compactionLock) {
+      List<Pack> candidates = new ArrayList<>();
+      for (Pack pack : packs.values()) {
+        long liveBytes = pack.liveBytes.get();
+        if (!isActive(pack)
+            && (liveBytes == 0 || liveBytes < COMPACTION_THRESHOLD * pack.fileSize())) {
+          candidates.add(pack);
+        }
+      }
+      for (Pack pack : candidates) {
+        compact(pack);
+      }
+      return candidates.size();
+    }
+  }
+
+  /**
+   * Runs {@link #compact()} in the background.
+   *
+   * @param executor the executor to run compaction on
+   * @return a future which completes with the number of packs deleted
+   */
+  public CompletableFuture<Integer> compactAsync(Executor executor) {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return compact();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }, executor);
+  }
+
+  private void compact(Pack pack) throws IOException {
+    Map<Digest, long[]> entries = new HashMap<>();
+    for (BlobIndexSegment segment : segments) {
+      segment.lock.readLock().lock();
+      try {
+        segment.forEach((digest, id, offset, length) -> {
+          if (id == pack.id) {
+            entries.put(digest, new long[] {offset, length});
+          }
+        });
+      } finally {
+        segment.lock.readLock().unlock();
+      }
+    }
+
+    for (Map.Entry<Digest, long[]> entry : entries.entrySet()) {
+      Digest digest = entry.getKey();
+      long oldOffset = entry.getValue()[0];
+      long length = entry.getValue()[1];
+      Writer writer = acquireWriter();
+      try {
+        Pack target = writer.pack(length);
+        long newOffset = target.size;
+        copy(pack.channel, oldOffset, target.channel, newOffset, length);
+        // The blob may have been deleted while it was being copied, in which case the copy is
+        // left as garbage in the target pack
+        BlobIndexSegment segment = segment(digest);
+        segment.lock.writeLock().lock();
+        try {
+          int slot = segment.find(digest);
+          if (slot >= 0 && segment.pack(slot) == pack.id && segment.offset(slot) == oldOffset) {
+            segment.relocate(slot, target.id, newOffset);
+            target.liveBytes.addAndGet(length);
+            pack.liveBytes.addAndGet(-length);
+          }
+        } finally {
+          segment.lock.writeLock().unlock();
+        }
+        target.size = newOffset + length;
+      } finally {
+        writer.lock.unlock();
+      }
+    }
+
+    // Every index entry now points elsewhere. A reader which looked up an old location finds the
+    // channel closed, sees that the pack has left the map, and looks the blob up again
+    packs.remove(pack.id);
+    pack.channel.close();
+    Files.delete(packFile(pack.id));
+  }
+
+  /**
+   * Writes all changes to storage.
+   *
+   * @throws IOException if a pack cannot be written
+   */
+  public void force() throws IOException {
+    for (Pack pack : packs.values()) {
+      pack.channel.force(false);
+    }
+    for (BlobIndexSegment segment : segments) {
+      segment.lock.writeLock().lock();
+      try {
+        segment.force();
+      } finally {
+        segment.lock.writeLock().unlock();
+      }
+    }
+  }
+
+  /**
+   * Writes all changes to storage and closes the pack files. The store must not be used after
+   * this method is called.
+   *
+   * @throws IOException if a pack cannot be written or closed
+   */
+  @Override
+  public void close() throws IOException {
+    force();
+    for (Pack pack : packs.values()) {
+      pack.channel.close();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "BlobStore{"
+        + "directory=" + directory
+        + ", function=" + function
+        + '}';
+  }
+
+  private BlobIndexSegment segment(Digest digest) {
+    return segments[(int) (digest.longAt(0) >>> (Long.SIZE - SEGMENT_BITS))];
+  }
+
+  /**
+   * Locks a writer, preferring one which is not already in use. Callers must unlock it.
+   */
+  private Writer acquireWriter() {
+    int start = nextWriter.getAndIncrement();
+    for (int i = 0; i < WRITERS; i++) {
+      Writer writer = writers[Math.floorMod(start + i, WRITERS)];
+      if (writer.lock.tryLock()) {
+        return writer;
+      }
+    }
+    Writer writer = writers[Math.floorMod(start, WRITERS)];
+    writer.lock.lock();
+    return writer;
+  }
+
+  private boolean isActive(Pack pack) {
+    for (Writer writer : writers) {
+      if (writer.current == pack) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private Path packFile(int id) {
+    return directory.resolve(String.format("%s%08d%s", PACK_PREFIX, id, PACK_SUFFIX));
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer src, long position)
+      throws IOException {
+    while (src.hasRemaining()) {
+      position += channel.write(src, position);
+    }
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer dst, long position)
+      throws IOException {
+    while (dst.hasRemaining()) {
+      int read = channel.read(dst, position);
+      if (read < 0) {
+        throw new IOException("Pack file is truncated");
+      }
+      position += read;
+    }
+  }
+
+  private static void copy(FileChannel from, long fromPosition, FileChannel to, long toPosition,
+      long length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(COPY_BUFFER_SIZE, length));
+    for (long copied = 0; copied < length; ) {
+      buffer.clear().limit((int) Math.min(buffer.capacity(), length - copied));
+      readFully(from, buffer, fromPosition + copied);
+      buffer.flip();
+      copied += buffer.remaining();
+      writeFully(to, buffer, toPosition + copied - buffer.remaining());
+    }
+  }
+
+  /**
+   * A pack file. Only the writer holding it appends to it, and only at {@code size}.
+   */
+  private static final class Pack {
+    final int id;
+    final FileChannel channel;
+    final AtomicLong liveBytes = new AtomicLong();
+    /**
+     * The length of the committed contents; guarded by the lock of the writer which owns the pack.
+     */
+    long size;
+
+    Pack(int id, FileChannel channel) throws IOException {
+      this.id = id;
+      this.channel = channel;
+      this.size = channel.size();
+    }
+
+    long fileSize() throws IOException {
+      return channel.size();
+    }
+  }
+
+  /**
+   * A slot for appending to packs. Each writer owns one pack at a time.
+   */
+  private final class Writer {
+    final Lock lock = new ReentrantLock();
+    volatile Pack current;
+
+    /**
+     * Returns the pack to append a blob of the given length to, starting a new one if the current
+     * pack would grow too large. Must be called while holding {@link #lock}.
+     */
+    Pack pack(long length) throws IOException {
+      Pack pack = current;
+      if (pack == null || (pack.size > 0 && pack.size + length > maxPackSize)) {
+        int id = nextPackId.getAndIncrement();
+        FileChannel channel = FileChannel.open(packFile(id), StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        pack = new Pack(id, channel);
+        // Become active before the pack is visible, so compaction never selects it while empty
+        current = pack;
+        packs.put(id, pack);
+      }
+      return pack;
+    }
+  }
+}
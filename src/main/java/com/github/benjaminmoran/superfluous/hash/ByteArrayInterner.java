@@ -0,0 +1,247 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Deduplicates byte arrays with equal contents, so that many copies of the same payload can share
+ * one instance.
+ * <p>
+ * {@link #intern(byte[])} returns a canonical array for the contents of its argument. Arrays are
+ * fingerprinted with {@link HashFunctions#sipHash13(byte[]) SipHash-1-3} under a random key, and
+ * a matching fingerprint is confirmed by comparing the bytes, so distinct contents are never
+ * merged. Canonical arrays are held by weak references: once no caller refers to one, it is
+ * removed, and the interner does not keep payloads alive on its own.
+ * <p>
+ * Interned arrays are shared, so they must not be modified. The table is split into segments with
+ * separate locks, and all methods are thread-safe.
+ * <p>
+ * Basic usage:
+ * <pre>{@code
+ * ByteArrayInterner interner = ByteArrayInterner.create();
+ * byte[] body = interner.intern(message.body());
+ * }</pre>
+ */
+public final class ByteArrayInterner {
+  private static final SecureRandom KEY_SOURCE = new SecureRandom();
+  private static final int DEFAULT_CONCURRENCY = 16;
+  private static final int MAX_SEGMENTS = 1 << 16;
+
+  private final SipHashFunction function;
+  private final Segment[] segments;
+  private final int segmentShift;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder bytesSaved = new LongAdder();
+
+  private ByteArrayInterner(int segmentCount) {
+    byte[] key = new byte[SipHashFunction.KEY_LENGTH];
+    KEY_SOURCE.nextBytes(key);
+    this.function = HashFunctions.sipHash13(key);
+    this.segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment();
+    }
+    this.segmentShift = Long.SIZE - Integer.numberOfTrailingZeros(segmentCount);
+  }
+
+  /**
+   * {@return a new interner with the default number of segments}
+   */
+  public static ByteArrayInterner create() {
+    return create(DEFAULT_CONCURRENCY);
+  }
+
+  /**
+   * Creates an interner whose table is split into enough segments for the given number of threads
+   * to intern at once with little contention.
+   *
+   * @param concurrency the expected number of concurrent callers (must be positive)
+   * @return a new interner
+   */
+  public static ByteArrayInterner create(int concurrency) {
+    if (concurrency <= 0) {
+      throw new IllegalArgumentException("Concurrency must be positive");
+    }
+    // Clamp before rounding up to a power of two, which would overflow for large values
+    int segmentCount = Integer.highestOneBit(Math.min(MAX_SEGMENTS, concurrency) - 1) << 1;
+    return new ByteArrayInterner(Math.max(1, segmentCount));
+  }
+
+  /**
+   * Returns the canonical array with the same contents as {@code payload}.
+   * <p>
+   * If an equal array was interned earlier and is still reachable, returns that array; otherwise
+   * {@code payload} becomes the canonical array and is returned. The caller should replace its
+   * reference to {@code payload} with the result, so the duplicate can be garbage collected.
+   *
+   * @param payload the array to deduplicate, which must not be modified afterwards
+   * @return an array with the same contents as {@code payload}
+   */
+  public byte[] intern(byte[] payload) {
+    Objects.requireNonNull(payload);
+    long fingerprint = function.hashToLong(payload);
+    byte[] canonical = segments[(int) (fingerprint >>> segmentShift) & (segments.length - 1)]
+        .intern(payload, fingerprint);
+    if (canonical == payload) {
+      misses.increment();
+    } else {
+      hits.increment();
+      bytesSaved.add(payload.length);
+    }
+    return canonical;
+  }
+
+  /**
+   * {@return the number of calls to {@link #intern(byte[])} which returned an earlier array}
+   */
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * {@return the number of calls to {@link #intern(byte[])} which returned their argument}
+   */
+  public long missCount() {
+    return misses.sum();
+  }
+
+  /**
+   * {@return the fraction of calls to {@link #intern(byte[])} which returned an earlier array, or
+   * 0 if there have been none}
+   */
+  public double hitRate() {
+    long hitCount = hitCount();
+    long total = hitCount + missCount();
+    return total == 0 ? 0.0 : (double) hitCount / total;
+  }
+
+  /**
+   * {@return the total length of the arguments to {@link #intern(byte[])} which were replaced by
+   * an earlier array}
+   * <p>
+   * This is the number of bytes which can be reclaimed by the garbage collector, if callers keep
+   * only the canonical arrays.
+   */
+  public long bytesSaved() {
+    return bytesSaved.sum();
+  }
+
+  /**
+   * {@return the number of canonical arrays held}
+   * <p>
+   * Arrays which have been garbage collected may be counted until the interner is next used.
+   */
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    return "ByteArrayInterner{"
+        + "size=" + size()
+        + ", hitCount=" + hitCount()
+        + ", missCount=" + missCount()
+        + ", bytesSaved=" + bytesSaved()
+        + '}';
+  }
+
+  /**
+   * A chained hash table of weakly referenced arrays, guarded by a lock.
+   */
+  private static final class Segment {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReferenceQueue<byte[]> collected = new ReferenceQueue<>();
+    private Entry[] table = new Entry[INITIAL_CAPACITY];
+    private int count;
+
+    byte[] intern(byte[] payload, long fingerprint) {
+      lock.lock();
+      try {
+        removeCollected();
+        int bucket = (int) fingerprint & (table.length - 1);
+        for (Entry entry = table[bucket]; entry != null; entry = entry.next) {
+          if (entry.fingerprint == fingerprint && entry.length == payload.length) {
+            byte[] candidate = entry.get();
+            if (candidate != null && Arrays.equals(candidate, payload)) {
+              return candidate;
+            }
+          }
+        }
+        table[bucket] = new Entry(payload, fingerprint, collected, table[bucket]);
+        if (++count > table.length * 3 / 4) {
+          resize();
+        }
+        return payload;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    int size() {
+      lock.lock();
+      try {
+        removeCollected();
+        return count;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void removeCollected() {
+      for (Object reference; (reference = collected.poll()) != null; ) {
+        Entry stale = (Entry) reference;
+        int bucket = (int) stale.fingerprint & (table.length - 1);
+        Entry previous = null;
+        for (Entry entry = table[bucket]; entry != null; previous = entry, entry = entry.next) {
+          if (entry == stale) {
+            if (previous == null) {
+              table[bucket] = entry.next;
+            } else {
+              previous.next = entry.next;
+            }
+            count--;
+            break;
+          }
+        }
+      }
+    }
+
+    private void resize() {
+      Entry[] newTable = new Entry[2 * table.length];
+      for (Entry head : table) {
+        for (Entry entry = head, next; entry != null; entry = next) {
+          next = entry.next;
+          int bucket = (int) entry.fingerprint & (newTable.length - 1);
+          entry.next = newTable[bucket];
+          newTable[bucket] = entry;
+        }
+      }
+      table = newTable;
+    }
+  }
+
+  private static final class Entry extends WeakReference<byte[]> {
+    final long fingerprint;
+    final int length;
+    Entry next;
+
+    Entry(byte[] payload, long fingerprint, ReferenceQueue<byte[]> queue, Entry next) {
+      super(payload, queue);
+      this.fingerprint = fingerprint;
+      this.length = payload.length;
+      this.next = next;
+    }
+  }
+}
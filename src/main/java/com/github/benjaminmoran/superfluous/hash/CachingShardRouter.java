@@ -0,0 +1,74 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Instances of this class can be obtained from {@link ShardRouter#cached(int)}.
+ */
+class CachingShardRouter<S> implements ShardRouter<S> {
+  private final ShardRouter<S> router;
+  private final AtomicReferenceArray<Entry<S>> entries;
+  private final int mask;
+
+  CachingShardRouter(ShardRouter<S> router, int maxEntries) {
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("Cache size must be positive");
+    }
+    this.router = router;
+    int size = Integer.highestOneBit(maxEntries);
+    this.entries = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+  }
+
+  @Override
+  public List<S> shards() {
+    return router.shards();
+  }
+
+  @Override
+  public S route(byte[] key) {
+    int hash = Arrays.hashCode(Objects.requireNonNull(key));
+    int index = (hash ^ (hash >>> 16)) & mask;
+    Entry<S> entry = entries.get(index);
+    if (entry != null && entry.hash == hash && Arrays.equals(entry.key, key)) {
+      return entry.shard;
+    }
+    S shard = router.route(key);
+    // Entries are immutable, so a plain overwrite is enough to publish them safely
+    entries.set(index, new Entry<>(hash, key.clone(), shard));
+    return shard;
+  }
+
+  @Override
+  public S route(long key) {
+    return router.route(key);
+  }
+
+  @Override
+  public ShardRouter<S> cached(int maxEntries) {
+    return router.cached(maxEntries);
+  }
+
+  @Override
+  public String toString() {
+    return "CachingShardRouter{"
+        + "router=" + router
+        + ", entries=" + entries.length()
+        + '}';
+  }
+
+  private static final class Entry<S> {
+    final int hash;
+    final byte[] key;
+    final S shard;
+
+    Entry(int hash, byte[] key, S shard) {
+      this.hash = hash;
+      this.key = key;
+      this.shard = shard;
+    }
+  }
+}
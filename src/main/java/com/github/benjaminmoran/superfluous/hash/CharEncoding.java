@@ -0,0 +1,104 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+/**
+ * Encodes characters into a hasher a chunk at a time, so that a string costs one
+ * {@link Hasher#update(byte[], int, int)} call per chunk rather than one per byte.
+ */
+final class CharEncoding {
+  /**
+   * The longest encoding of one step of {@link #putUtf8}, a supplementary code point.
+   */
+  static final int MIN_CHUNK_LENGTH = 4;
+
+  private CharEncoding() {
+  }
+
+  /**
+   * {@return a chunk length suitable for encoding {@code input}, at most {@code maxLength}}
+   */
+  static int chunkLength(CharSequence input, int maxLength) {
+    return (int) Math.max(MIN_CHUNK_LENGTH, Math.min(maxLength, 3L * input.length()));
+  }
+
+  /**
+   * Appends the UTF-16BE encoding of {@code input} to a hasher, using {@code chunk} (at least
+   * {@link #MIN_CHUNK_LENGTH} bytes) as the staging area.
+   */
+  static void putUtf16(Hasher hasher, CharSequence input, byte[] chunk) {
+    int n = 0;
+    for (int i = 0, length = input.length(); i < length; i++) {
+      if (n > chunk.length - 2) {
+        hasher.update(chunk, 0, n);
+        n = 0;
+      }
+      char c = input.charAt(i);
+      chunk[n++] = (byte) (c >>> 8);
+      chunk[n++] = (byte) c;
+    }
+    if (n > 0) {
+      hasher.update(chunk, 0, n);
+    }
+  }
+
+  /**
+   * Appends the UTF-8 encoding of {@code input} to a hasher, with unpaired surrogates replaced by
+   * {@code '?'}, using {@code chunk} (at least {@link #MIN_CHUNK_LENGTH} bytes) as the staging
+   * area.
+   */
+  static void putUtf8(Hasher hasher, CharSequence input, byte[] chunk) {
+    int n = 0;
+    for (int i = 0, length = input.length(); i < length; i++) {
+      if (n > chunk.length - MIN_CHUNK_LENGTH) {
+        hasher.update(chunk, 0, n);
+        n = 0;
+      }
+      char c = input.charAt(i);
+      if (c < 0x80) {
+        chunk[n++] = (byte) c;
+      } else if (c < 0x800) {
+        chunk[n++] = (byte) (0xc0 | (c >>> 6));
+        chunk[n++] = (byte) (0x80 | (c & 0x3f));
+      } else if (!Character.isSurrogate(c)) {
+        chunk[n++] = (byte) (0xe0 | (c >>> 12));
+        chunk[n++] = (byte) (0x80 | ((c >>> 6) & 0x3f));
+        chunk[n++] = (byte) (0x80 | (c & 0x3f));
+      } else if (Character.isHighSurrogate(c) && i + 1 < length
+          && Character.isLowSurrogate(input.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, input.charAt(++i));
+        chunk[n++] = (byte) (0xf0 | (codePoint >>> 18));
+        chunk[n++] = (byte) (0x80 | ((codePoint >>> 12) & 0x3f));
+        chunk[n++] = (byte) (0x80 | ((codePoint >>> 6) & 0x3f));
+        chunk[n++] = (byte) (0x80 | (codePoint & 0x3f));
+      } else {
+        chunk[n++] = (byte) '?';
+      }
+    }
+    if (n > 0) {
+      hasher.update(chunk, 0, n);
+    }
+  }
+
+  /**
+   * {@return the length of the encoding written by {@link #putUtf8}}
+   */
+  static int utf8Length(CharSequence input) {
+    int encodedLength = 0;
+    for (int i = 0, length = input.length(); i < length; i++) {
+      char c = input.charAt(i);
+      if (c < 0x80) {
+        encodedLength += 1;
+      } else if (c < 0x800) {
+        encodedLength += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < length
+          && Character.isLowSurrogate(input.charAt(i + 1))) {
+        encodedLength += 4;
+        i++;
+      } else if (Character.isSurrogate(c)) {
+        encodedLength += 1;
+      } else {
+        encodedLength += 3;
+      }
+    }
+    return encodedLength;
+  }
+}
@@ -0,0 +1,53 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.zip.CRC32C;
+
+/**
+ * Instances of this class can be obtained from {@link HashFunctions#crc32c()}.
+ * <p>
+ * Delegates to {@link CRC32C}, which the JVM compiles to hardware CRC instructions where they are
+ * available.
+ */
+class Crc32cHasher extends CrcHasher {
+  static final CrcFunction HASH_FUNCTION =
+      new CrcFunction("CRC-32C", 32, 0x82f63b78L, Crc32cHasher::new);
+
+  private final CRC32C crc;
+
+  private Crc32cHasher() {
+    crc = new CRC32C();
+  }
+
+  @Override
+  public HashFunction algorithm() {
+    return HashFunctions.crc32c();
+  }
+
+  @Override
+  public Hasher update(byte[] input, int offset, int length) {
+    Objects.requireNonNull(input);
+    Objects.checkFromIndexSize(offset, length, input.length);
+    crc.update(input, offset, length);
+    return this;
+  }
+
+  @Override
+  public Hasher putBytes(ByteBuffer input) {
+    crc.update(input);
+    return this;
+  }
+
+  @Override
+  long value() {
+    return crc.getValue();
+  }
+
+  @Override
+  public String toString() {
+    return "Crc32cHasher{"
+        + "value=" + Long.toHexString(value())
+        + '}';
+  }
+}
@@ -0,0 +1,110 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+/**
+ * Instances of this class can be obtained from {@link HashFunctions#crc64Nvme()}.
+ * <p>
+ * Processes eight bytes per step with the slicing-by-8 table method.
+ */
+class Crc64NvmeHasher extends CrcHasher {
+  /**
+   * The generator polynomial 0xad93d23594c93659, bit-reversed.
+   */
+  private static final long POLYNOMIAL = 0x9a6c9329ac4bc9b5L;
+  static final CrcFunction HASH_FUNCTION =
+      new CrcFunction("CRC-64/NVME", 64, POLYNOMIAL, Crc64NvmeHasher::new);
+
+  private static final VarHandle LONGS =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+  /**
+   * {@code TABLE[256 * k + b]} is the effect on the register of byte {@code b} followed by
+   * {@code k} zero bytes. The eight tables share one array to avoid a dereference per lookup.
+   */
+  private static final long[] TABLE = new long[256 * Long.BYTES];
+
+  static {
+    for (int b = 0; b < 256; b++) {
+      long crc = b;
+      for (int bit = 0; bit < Byte.SIZE; bit++) {
+        crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+      }
+      TABLE[b] = crc;
+    }
+    for (int i = 256; i < TABLE.length; i++) {
+      long previous = TABLE[i - 256];
+      TABLE[i] = (previous >>> 8) ^ TABLE[(int) previous & 0xff];
+    }
+  }
+
+  private long register;
+
+  private Crc64NvmeHasher() {
+    register = ~0L;
+  }
+
+  @Override
+  public HashFunction algorithm() {
+    return HashFunctions.crc64Nvme();
+  }
+
+  @Override
+  public Hasher update(byte[] input, int offset, int length) {
+    Objects.requireNonNull(input);
+    Objects.checkFromIndexSize(offset, length, input.length);
+    long crc = register;
+    int i = offset;
+    int end = offset + length;
+    for (; i <= end - Long.BYTES; i += Long.BYTES) {
+      crc = step8(crc ^ (long) LONGS.get(input, i));
+    }
+    for (; i < end; i++) {
+      crc = (crc >>> 8) ^ TABLE[(int) (crc ^ input[i]) & 0xff];
+    }
+    register = crc;
+    return this;
+  }
+
+  @Override
+  public Hasher putBytes(ByteBuffer input) {
+    ByteBuffer littleEndian = input.slice().order(ByteOrder.LITTLE_ENDIAN);
+    long crc = register;
+    while (littleEndian.remaining() >= Long.BYTES) {
+      crc = step8(crc ^ littleEndian.getLong());
+    }
+    while (littleEndian.hasRemaining()) {
+      crc = (crc >>> 8) ^ TABLE[(int) (crc ^ littleEndian.get()) & 0xff];
+    }
+    register = crc;
+    input.position(input.limit());
+    return this;
+  }
+
+  private static long step8(long x) {
+    return TABLE[0x700 | (int) x & 0xff]
+        ^ TABLE[0x600 | (int) (x >>> 8) & 0xff]
+        ^ TABLE[0x500 | (int) (x >>> 16) & 0xff]
+        ^ TABLE[0x400 | (int) (x >>> 24) & 0xff]
+        ^ TABLE[0x300 | (int) (x >>> 32) & 0xff]
+        ^ TABLE[0x200 | (int) (x >>> 40) & 0xff]
+        ^ TABLE[0x100 | (int) (x >>> 48) & 0xff]
+        ^ TABLE[(int) (x >>> 56)];
+  }
+
+  @Override
+  long value() {
+    return ~register;
+  }
+
+  @Override
+  public String toString() {
+    return "Crc64NvmeHasher{"
+        + "value=" + Long.toHexString(value())
+        + '}';
+  }
+}
@@ -0,0 +1,226 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.nio.ByteBuffer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * A cyclic redundancy check, which detects accidental corruption of data but offers no protection
+ * against deliberate tampering.
+ * <p>
+ * Unlike a cryptographic hash, a CRC can be computed in pieces: the checksum of a concatenation can
+ * be {@link #combine(long, long, long) combined} from the checksums of its parts and their lengths.
+ * This allows a large input to be {@link #hashParallel(ByteBuffer) checksummed in parallel}.
+ * <p>
+ * The digest of a message is the checksum as a big-endian unsigned integer, so for example the
+ * CRC-32C digest of {@code "123456789"} has the hexadecimal representation {@code "e3069283"}.
+ * <p>
+ * Instances can be obtained from {@link HashFunctions#crc32c()} and
+ * {@link HashFunctions#crc64Nvme()}.
+ */
+public final class CrcFunction implements HashFunction {
+  /**
+   * Inputs at least this large are split into chunks of at least this size by
+   * {@link #hashParallel(ByteBuffer)}.
+   */
+  private static final int MIN_PARALLEL_CHUNK = 1 << 20;
+
+  private final String name;
+  private final int width;
+  private final long polynomial;
+  private final long mask;
+  private final Supplier<CrcHasher> factory;
+  /**
+   * {@code powers[k]} is x<sup>2<sup>k</sup></sup> modulo the polynomial.
+   */
+  private final long[] powers;
+
+  /**
+   * Defines a CRC whose input and output are bit-reflected, and whose initial value and final XOR
+   * are both all ones (the combination rule relies on them being equal).
+   *
+   * @param polynomial the bit-reversed generator polynomial, without its leading term
+   */
+  CrcFunction(String name, int width, long polynomial, Supplier<CrcHasher> factory) {
+    this.name = name;
+    this.width = width;
+    this.polynomial = polynomial;
+    this.mask = width == Long.SIZE ? -1L : (1L << width) - 1;
+    this.factory = factory;
+    this.powers = new long[Long.SIZE + 3]; // enough for any byte count up to 2^63
+    powers[0] = 1L << (width - 2); // x^1, since bit (width - 1) represents x^0
+    for (int k = 1; k < powers.length; k++) {
+      powers[k] = multiplyModP(powers[k - 1], powers[k - 1]);
+    }
+  }
+
+  @Override
+  public String name() {
+    return name;
+  }
+
+  @Override
+  public int digestLength() {
+    return width / Byte.SIZE;
+  }
+
+  @Override
+  public Hasher init() {
+    return factory.get();
+  }
+
+  /**
+   * Computes the checksum of a sub-array of the input, without creating a {@link Digest}.
+   *
+   * @param input  the byte array containing the message
+   * @param offset the offset of the message in {@code input}
+   * @param length the number of bytes in the message
+   * @return the checksum, as an unsigned integer of this function's width
+   */
+  public long checksum(byte[] input, int offset, int length) {
+    CrcHasher hasher = factory.get();
+    hasher.update(input, offset, length);
+    return hasher.value();
+  }
+
+  /**
+   * Computes the checksum of the remaining bytes of a buffer, without creating a {@link Digest}.
+   * <p>
+   * The buffer's position, limit and contents are not modified.
+   *
+   * @param input the buffer containing the message
+   * @return the checksum, as an unsigned integer of this function's width
+   */
+  public long checksum(ByteBuffer input) {
+    CrcHasher hasher = factory.get();
+    hasher.putBytes(input.duplicate());
+    return hasher.value();
+  }
+
+  /**
+   * Computes the digest of the remaining bytes of a buffer, splitting large inputs into chunks
+   * which are checksummed in parallel and then combined.
+   * <p>
+   * The result is the same as hashing the bytes sequentially. The buffer's position, limit and
+   * contents are not modified; a file can be hashed by passing a {@link
+   * java.nio.channels.FileChannel#map mapped} buffer.
+   *
+   * @param input the buffer containing the message
+   * @return the digest of the message
+   */
+  public Digest hashParallel(ByteBuffer input) {
+    int position = input.position();
+    int length = input.remaining();
+    int chunks = Math.max(1, Math.min(
+        length / MIN_PARALLEL_CHUNK, 4 * Runtime.getRuntime().availableProcessors()));
+    int chunkLength = length / chunks;
+    long[] checksums = IntStream.range(0, chunks)
+        .parallel()
+        .mapToLong(i -> {
+          int start = i * chunkLength;
+          int end = i == chunks - 1 ? length : start + chunkLength;
+          return checksum(input.slice(position + start, end - start));
+        })
+        .toArray();
+    long crc = checksums[0];
+    for (int i = 1; i < chunks; i++) {
+      int chunkEnd = i == chunks - 1 ? length : (i + 1) * chunkLength;
+      crc = combine(crc, checksums[i], chunkEnd - i * chunkLength);
+    }
+    return toDigest(crc);
+  }
+
+  /**
+   * Computes the checksum of a concatenation from the checksums of its parts.
+   * <p>
+   * If {@code crcA} is the checksum of {@code a} and {@code crcB} is the checksum of {@code b},
+   * returns the checksum of {@code a} followed by {@code b}, in time logarithmic in
+   * {@code lengthB}.
+   *
+   * @param crcA    the checksum of the first part
+   * @param crcB    the checksum of the second part
+   * @param lengthB the length of the second part in bytes (must be non-negative)
+   * @return the checksum of the concatenation
+   */
+  public long combine(long crcA, long crcB, long lengthB) {
+    if (lengthB < 0) {
+      throw new IllegalArgumentException("Length must be non-negative");
+    }
+    // Appending lengthB bytes multiplies the contribution of crcA by x^(8 lengthB)
+    long shift = 1L << (width - 1);
+    int k = 3;
+    for (long n = lengthB; n != 0; n >>>= 1, k++) {
+      if ((n & 1) != 0) {
+        shift = multiplyModP(powers[k], shift);
+      }
+    }
+    return (multiplyModP(shift, crcA & mask) ^ crcB) & mask;
+  }
+
+  /**
+   * Computes the digest of a concatenation from the digests of its parts.
+   *
+   * @param digestA the digest of the first part, created by this function
+   * @param digestB the digest of the second part, created by this function
+   * @param lengthB the length of the second part in bytes (must be non-negative)
+   * @return the digest of the concatenation
+   * @see #combine(long, long, long)
+   */
+  public Digest combine(Digest digestA, Digest digestB, long lengthB) {
+    return toDigest(combine(checksum(digestA), checksum(digestB), lengthB));
+  }
+
+  /**
+   * Extracts the checksum from a digest created by this function.
+   *
+   * @param digest a digest of this function's length
+   * @return the checksum, as an unsigned integer of this function's width
+   */
+  public long checksum(Digest digest) {
+    if (digest.length() != digestLength()) {
+      throw new IllegalArgumentException("Digest length must be " + digestLength());
+    }
+    long value = 0;
+    for (byte b : digest.bytes()) {
+      value = (value << Byte.SIZE) | (b & 0xff);
+    }
+    return value;
+  }
+
+  private Digest toDigest(long checksum) {
+    return Digest.of(this, toBytes(checksum, digestLength()));
+  }
+
+  /**
+   * {@return the low {@code length} bytes of {@code checksum} in big-endian order}
+   */
+  static byte[] toBytes(long checksum, int length) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = (byte) (checksum >>> (Byte.SIZE * (length - 1 - i)));
+    }
+    return bytes;
+  }
+
+  /**
+   * Multiplies two polynomials modulo the generator, in the bit-reflected representation.
+   */
+  private long multiplyModP(long a, long b) {
+    long product = 0;
+    for (long m = 1L << (width - 1); m != 0; m >>>= 1) {
+      if ((a & m) != 0) {
+        product ^= b;
+        if ((a & (m - 1)) == 0) {
+          break;
+        }
+      }
+      b = (b & 1) != 0 ? (b >>> 1) ^ polynomial : b >>> 1;
+    }
+    return product;
+  }
+
+  @Override
+  public String toString() {
+    return name();
+  }
+}
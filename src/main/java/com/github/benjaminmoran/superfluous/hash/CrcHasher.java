@@ -0,0 +1,18 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+/**
+ * A hasher for a cyclic redundancy check, whose state fits in a {@code long}.
+ */
+abstract class CrcHasher extends AbstractHasher {
+  /**
+   * {@return the checksum of the input received, with the output transformation applied}
+   * <p>
+   * Unlike {@link #digest()}, this method does not change the state of the hasher.
+   */
+  abstract long value();
+
+  @Override
+  protected byte[] digestBytes() {
+    return CrcFunction.toBytes(value(), algorithm().digestLength());
+  }
+}
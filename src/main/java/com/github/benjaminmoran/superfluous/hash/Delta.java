@@ -0,0 +1,377 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Computes and applies rsync-style deltas, which describe a new version of a file in terms of the
+ * blocks of an old version (the basis).
+ * <p>
+ * The holder of the basis sends its {@link DeltaSignature}. The holder of the new file slides a
+ * window of one block over it, updating the weak checksum of the window in constant time at each
+ * step. When the weak checksum matches a block of the basis and the strong checksums agree, the
+ * window is replaced by a reference to that block and skips ahead by a block; otherwise the byte
+ * leaving the window is sent as a literal. The result is streamed as a sequence of instructions,
+ * which the holder of the basis applies to reconstruct the new file.
+ * <p>
+ * A delta records the length of its basis, which {@link #apply(Path, InputStream, OutputStream)}
+ * checks before writing anything, so most stale bases are rejected up front. It ends with the
+ * SHA-256 digest of the new file, which {@code apply} also checks, so a false match of the strong
+ * checksums or a stale basis of the same length is detected.
+ * <p>
+ * Basic usage:
+ * <pre>{@code
+ * // on the node holding the old file
+ * DeltaSignature signature = DeltaSignature.compute(oldFile);
+ * // on the node holding the new file
+ * Delta.encode(signature, newFile, deltaOut);
+ * // back on the node holding the old file
+ * Delta.apply(oldFile, deltaIn, reconstructedOut);
+ * }</pre>
+ */
+public final class Delta {
+  private static final int MAGIC = 0x5346444c; // "SFDL"
+  private static final byte END = 0;
+  private static final byte COPY = 1;
+  private static final byte LITERAL = 2;
+  /**
+   * The maximum length of one literal instruction.
+   */
+  private static final int MAX_LITERAL = 1 << 20;
+  /**
+   * Large files are mapped in regions of this many bytes.
+   */
+  private static final int REGION_SIZE = 1 << 28;
+
+  private Delta() {
+  }
+
+  /**
+   * Computes the delta from the basis of a signature to a new file.
+   * <p>
+   * The new file is memory-mapped a region at a time, so files larger than memory are supported,
+   * and the delta is written as it is computed.
+   *
+   * @param signature the signature of the basis
+   * @param target    the new file
+   * @param delta     the stream to write the delta to, which is flushed but not closed
+   * @return the number of bytes of the new file which were written as literals
+   * @throws IOException if the file cannot be read or the stream cannot be written
+   */
+  public static long encode(DeltaSignature signature, Path target, OutputStream delta)
+      throws IOException {
+    return encode(signature, target, delta, REGION_SIZE);
+  }
+
+  static long encode(DeltaSignature signature, Path target, OutputStream delta, int regionSize)
+      throws IOException {
+    Objects.requireNonNull(signature);
+    Objects.requireNonNull(delta);
+    try (FileChannel channel = FileChannel.open(target, StandardOpenOption.READ)) {
+      return new Encoder(signature, new Source(channel, channel.size(), regionSize), delta).run();
+    }
+  }
+
+  /**
+   * Computes the delta from the basis of a signature to the remaining bytes of a buffer.
+   * <p>
+   * The buffer's position, limit and contents are not modified.
+   *
+   * @param signature the signature of the basis
+   * @param target    the buffer containing the new version
+   * @param delta     the stream to write the delta to, which is flushed but not closed
+   * @return the number of bytes of the new version which were written as literals
+   * @throws IOException if the stream cannot be written
+   */
+  public static long encode(DeltaSignature signature, ByteBuffer target, OutputStream delta)
+      throws IOException {
+    Objects.requireNonNull(signature);
+    Objects.requireNonNull(delta);
+    return new Encoder(signature, new Source(target.slice()), delta).run();
+  }
+
+  /**
+   * Reconstructs a new file from its basis and a delta.
+   *
+   * @param basis  the basis file, from which the signature used by the delta was computed
+   * @param delta  the stream to read the delta from
+   * @param target the stream to write the new file to, which is flushed but not closed
+   * @throws IOException if a file or stream cannot be read or written, the delta is corrupt, the
+   *     basis does not have the length recorded in the delta, or the result does not match the
+   *     digest recorded in the delta
+   */
+  public static void apply(Path basis, InputStream delta, OutputStream target)
+      throws IOException {
+    Objects.requireNonNull(target);
+    DataInputStream in = new DataInputStream(new BufferedInputStream(delta));
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a delta");
+    }
+    int blockSize = in.readInt();
+    long basisLength = in.readLong();
+    if (blockSize <= 0 || blockSize > DeltaSignature.MAX_BLOCK_SIZE || basisLength < 0) {
+      throw new IOException("Corrupt delta");
+    }
+    Hasher hasher = HashFunctions.sha256().init();
+    byte[] buffer = new byte[MAX_LITERAL];
+    try (FileChannel channel = FileChannel.open(basis, StandardOpenOption.READ)) {
+      if (channel.size() != basisLength) {
+        throw new IOException("Basis has length " + channel.size() + ", but the delta was computed"
+            + " against a basis of length " + basisLength);
+      }
+      while (true) {
+        byte op = in.readByte();
+        if (op == COPY) {
+          long position = (long) in.readInt() * blockSize;
+          long length = (long) in.readInt() * blockSize;
+          if (position < 0 || length <= 0 || position + length > channel.size()) {
+            throw new IOException("Delta refers beyond the end of the basis");
+          }
+          while (length > 0) {
+            ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, (int) Math.min(buffer.length, length));
+            while (chunk.hasRemaining()) {
+              if (channel.read(chunk, position + chunk.position()) < 0) {
+                throw new EOFException("Basis was truncated");
+              }
+            }
+            target.write(buffer, 0, chunk.position());
+            hasher.update(buffer, 0, chunk.position());
+            position += chunk.position();
+            length -= chunk.position();
+          }
+        } else if (op == LITERAL) {
+          int length = in.readInt();
+          if (length <= 0 || length > MAX_LITERAL) {
+            throw new IOException("Corrupt delta");
+          }
+          in.readFully(buffer, 0, length);
+          target.write(buffer, 0, length);
+          hasher.update(buffer, 0, length);
+        } else if (op == END) {
+          byte[] expected = new byte[HashFunctions.sha256().digestLength()];
+          in.readFully(expected);
+          if (!Arrays.equals(expected, hasher.digest().bytes())) {
+            throw new IOException("Reconstructed file does not match the delta");
+          }
+          target.flush();
+          return;
+        } else {
+          throw new IOException("Corrupt delta");
+        }
+      }
+    }
+  }
+
+  /**
+   * The new version of a file, either a single buffer or a file mapped one region at a time.
+   * Each region overlaps the next by {@link #MAX_LITERAL} bytes, so any window or literal which
+   * starts in a region can be sliced from it.
+   */
+  private static final class Source {
+    private final FileChannel channel;
+    private final long size;
+    private final int regionSize;
+    private ByteBuffer region;
+    private long regionStart;
+
+    Source(ByteBuffer buffer) {
+      this.channel = null;
+      this.size = buffer.remaining();
+      this.regionSize = buffer.remaining();
+      this.region = buffer;
+    }
+
+    Source(FileChannel channel, long size, int regionSize) {
+      this.channel = channel;
+      this.size = size;
+      this.regionSize = regionSize;
+      this.region = ByteBuffer.allocate(0);
+    }
+
+    long size() {
+      return size;
+    }
+
+    byte get(long position) throws IOException {
+      long index = position - regionStart;
+      if (index < 0 || index >= region.limit()) {
+        map(position);
+        index = position - regionStart;
+      }
+      return region.get((int) index);
+    }
+
+    /**
+     * {@return a view of {@code length} bytes, where {@code length} is at most
+     * {@link #MAX_LITERAL}}
+     */
+    ByteBuffer slice(long position, int length) throws IOException {
+      long index = position - regionStart;
+      if (index < 0 || index + length > region.limit()) {
+        map(position);
+        index = position - regionStart;
+      }
+      return region.slice((int) index, length);
+    }
+
+    private void map(long position) throws IOException {
+      regionStart = position / regionSize * regionSize;
+      long length = Math.min((long) regionSize + MAX_LITERAL, size - regionStart);
+      region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, length);
+    }
+  }
+
+  /**
+   * The state of computing one delta.
+   */
+  private static final class Encoder {
+    private final DeltaSignature signature;
+    private final Source source;
+    private final DataOutputStream out;
+    private final int blockSize;
+    private final Hasher hasher = HashFunctions.sha256().init();
+    private final byte[] literalBuffer;
+    private final byte[] strong = new byte[DeltaSignature.STRONG_LENGTH];
+    private long literalBytes;
+    /**
+     * A run of consecutive basis blocks waiting to be written, as one instruction.
+     */
+    private int runStart = -1;
+    private int runLength;
+
+    Encoder(DeltaSignature signature, Source source, OutputStream delta) {
+      this.signature = signature;
+      this.source = source;
+      this.out = new DataOutputStream(new BufferedOutputStream(delta));
+      this.blockSize = signature.blockSize();
+      this.literalBuffer = new byte[(int) Math.min(MAX_LITERAL, source.size())];
+    }
+
+    long run() throws IOException {
+      out.writeInt(MAGIC);
+      out.writeInt(blockSize);
+      out.writeLong(signature.basisLength());
+      long size = source.size();
+      RollingChecksum checksum = new RollingChecksum(blockSize);
+      boolean windowValid = false;
+      long literalStart = 0;
+      long position = 0;
+      while (signature.blockCount() > 0 && position + blockSize <= size) {
+        if (!windowValid) {
+          checksum.reset(source.slice(position, blockSize), 0);
+          windowValid = true;
+        }
+        int block = findBlock(checksum.value(), position);
+        if (block >= 0) {
+          writeLiteral(literalStart, position);
+          writeCopy(block, position);
+          position += blockSize;
+          literalStart = position;
+          windowValid = false;
+          continue;
+        }
+        if (position - literalStart == MAX_LITERAL) {
+          writeLiteral(literalStart, position);
+          literalStart = position;
+        }
+        if (position + blockSize < size) {
+          checksum.roll(source.get(position), source.get(position + blockSize));
+        }
+        position++;
+      }
+      for (long start = literalStart; start < size; start += MAX_LITERAL) {
+        writeLiteral(start, Math.min(size, start + MAX_LITERAL));
+      }
+      flushRun();
+      out.writeByte(END);
+      out.write(hasher.digest().bytes());
+      out.flush();
+      return literalBytes;
+    }
+
+    /**
+     * {@return a basis block equal to the window at {@code position}, or -1 if there is none}
+     * <p>
+     * The block after the current run is tried first, so that unchanged stretches of the file
+     * become a single instruction.
+     */
+    private int findBlock(int weak, long position) throws IOException {
+      boolean strongComputed = false;
+      int next = runStart + runLength;
+      if (runStart >= 0 && next < signature.blockCount() && signature.weak(next) == weak) {
+        computeStrong(position);
+        strongComputed = true;
+        if (signature.strongMatches(next, strong)) {
+          return next;
+        }
+      }
+      for (int block = signature.firstCandidate(weak); block >= 0;
+          block = signature.nextCandidate(block)) {
+        if (signature.weak(block) == weak) {
+          if (!strongComputed) {
+            computeStrong(position);
+            strongComputed = true;
+          }
+          if (signature.strongMatches(block, strong)) {
+            return block;
+          }
+        }
+      }
+      return -1;
+    }
+
+    private void computeStrong(long position) throws IOException {
+      DeltaSignature.strongChecksum(source.slice(position, blockSize), strong, 0);
+    }
+
+    private void writeCopy(int block, long position) throws IOException {
+      if (runStart >= 0 && block == runStart + runLength) {
+        runLength++;
+      } else {
+        flushRun();
+        runStart = block;
+        runLength = 1;
+      }
+      hasher.putBytes(source.slice(position, blockSize));
+    }
+
+    private void flushRun() throws IOException {
+      if (runStart >= 0) {
+        out.writeByte(COPY);
+        out.writeInt(runStart);
+        out.writeInt(runLength);
+        runStart = -1;
+        runLength = 0;
+      }
+    }
+
+    /**
+     * Writes the bytes {@code [start, end)} of the new file, at most {@link #MAX_LITERAL} bytes.
+     */
+    private void writeLiteral(long start, long end) throws IOException {
+      int length = (int) (end - start);
+      if (length == 0) {
+        return;
+      }
+      flushRun();
+      source.slice(start, length).get(literalBuffer, 0, length);
+      out.writeByte(LITERAL);
+      out.writeInt(length);
+      out.write(literalBuffer, 0, length);
+      hasher.update(literalBuffer, 0, length);
+      literalBytes += length;
+    }
+  }
+}
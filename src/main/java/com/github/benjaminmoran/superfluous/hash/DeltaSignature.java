@@ -0,0 +1,285 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The checksums of the blocks of a basis file, from which a {@link Delta} to a newer version of
+ * the file can be computed without access to the basis itself.
+ * <p>
+ * The basis is divided into blocks of a fixed size. Each block has a weak rolling checksum, which
+ * can be computed cheaply at every offset of the new file, and a strong checksum (the first 16
+ * bytes of its SHA-256 digest), which confirms a match. A partial final block is not included, so
+ * its bytes are always sent as literals.
+ * <p>
+ * Signatures are immutable. They can be sent to the holder of the new file with
+ * {@link #writeTo(OutputStream)} and {@link #read(InputStream)}.
+ */
+public final class DeltaSignature {
+  static final int STRONG_LENGTH = 16;
+  static final int MAX_BLOCK_SIZE = 1 << 20;
+
+  private static final int MAGIC = 0x53465347; // "SFSG"
+  private static final int MIN_DEFAULT_BLOCK_SIZE = 700;
+  private static final int MAX_DEFAULT_BLOCK_SIZE = 1 << 17;
+
+  private final int blockSize;
+  private final long basisLength;
+  private final int[] weak;
+  private final byte[] strong;
+  /**
+   * A bit per bucket of a table larger than {@link #buckets}, set if some block's weak checksum
+   * falls in it. Most offsets of a changed file match no block, and this table is small enough to
+   * stay in cache, so it rejects them without touching {@link #buckets}.
+   */
+  private final long[] filter;
+  private final int filterShift;
+  /**
+   * Heads of the chains of blocks with the same weak checksum bucket, or -1.
+   */
+  private final int[] buckets;
+  private final int bucketShift;
+  /**
+   * The next block in each block's chain, or -1.
+   */
+  private final int[] chains;
+
+  private DeltaSignature(int blockSize, long basisLength, int[] weak, byte[] strong) {
+    this.blockSize = blockSize;
+    this.basisLength = basisLength;
+    this.weak = weak;
+    this.strong = strong;
+    int bucketBits = Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(weak.length));
+    int filterBits = Math.min(30, bucketBits + 4);
+    this.buckets = new int[1 << bucketBits];
+    this.bucketShift = Integer.SIZE - bucketBits;
+    this.filter = new long[Math.max(1, (1 << filterBits) / Long.SIZE)];
+    this.filterShift = Integer.SIZE - filterBits;
+    this.chains = new int[weak.length];
+    Arrays.fill(buckets, -1);
+    // Insert in reverse, so that each chain lists earlier blocks first
+    for (int block = weak.length - 1; block >= 0; block--) {
+      int hash = spread(weak[block]);
+      int bucket = hash >>> bucketShift;
+      chains[block] = buckets[bucket];
+      buckets[bucket] = block;
+      int bit = hash >>> filterShift;
+      filter[bit >>> 6] |= 1L << bit;
+    }
+  }
+
+  /**
+   * Computes the signature of a file, with a block size chosen from its length.
+   * <p>
+   * As in rsync, the block size is about the square root of the length, so that the signature and
+   * the literal data around each change grow at the same rate.
+   *
+   * @param basis the basis file
+   * @return the signature of {@code basis}
+   * @throws IOException if the file cannot be read
+   */
+  public static DeltaSignature compute(Path basis) throws IOException {
+    return compute(basis, defaultBlockSize(Files.size(basis)));
+  }
+
+  /**
+   * Computes the signature of a file.
+   *
+   * @param basis     the basis file
+   * @param blockSize the block size in bytes (between 1 and 2<sup>20</sup>)
+   * @return the signature of {@code basis}
+   * @throws IOException if the file cannot be read
+   */
+  public static DeltaSignature compute(Path basis, int blockSize) throws IOException {
+    try (InputStream in = Files.newInputStream(basis)) {
+      return compute(in, blockSize);
+    }
+  }
+
+  /**
+   * Computes the signature of the bytes of a stream, reading until the end of the stream.
+   *
+   * @param basis     the stream to read the basis from
+   * @param blockSize the block size in bytes (between 1 and 2<sup>20</sup>)
+   * @return the signature of the bytes read
+   * @throws IOException if the stream cannot be read
+   */
+  public static DeltaSignature compute(InputStream basis, int blockSize) throws IOException {
+    Objects.requireNonNull(basis);
+    checkBlockSize(blockSize);
+    RollingChecksum checksum = new RollingChecksum(blockSize);
+    byte[] block = new byte[blockSize];
+    int[] weak = new int[16];
+    byte[] strong = new byte[16 * STRONG_LENGTH];
+    int count = 0;
+    long length = 0;
+    while (true) {
+      int read = basis.readNBytes(block, 0, blockSize);
+      length += read;
+      if (read < blockSize) {
+        break;
+      }
+      if (count == weak.length) {
+        if (count == Integer.MAX_VALUE / STRONG_LENGTH) {
+          throw new IllegalArgumentException("Block size is too small for the basis");
+        }
+        int newCount = (int) Math.min(2L * count, Integer.MAX_VALUE / STRONG_LENGTH);
+        weak = Arrays.copyOf(weak, newCount);
+        strong = Arrays.copyOf(strong, newCount * STRONG_LENGTH);
+      }
+      checksum.reset(ByteBuffer.wrap(block), 0);
+      weak[count] = checksum.value();
+      strongChecksum(ByteBuffer.wrap(block), strong, count * STRONG_LENGTH);
+      count++;
+    }
+    return new DeltaSignature(blockSize, length, Arrays.copyOf(weak, count),
+        Arrays.copyOf(strong, count * STRONG_LENGTH));
+  }
+
+  /**
+   * Reads a signature written by {@link #writeTo(OutputStream)}.
+   *
+   * @param in the stream to read from
+   * @return the signature read
+   * @throws IOException if the stream cannot be read or does not contain a signature
+   */
+  public static DeltaSignature read(InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+    if (data.readInt() != MAGIC) {
+      throw new IOException("Not a delta signature");
+    }
+    int blockSize = data.readInt();
+    long basisLength = data.readLong();
+    int count = data.readInt();
+    if (blockSize <= 0 || blockSize > MAX_BLOCK_SIZE || count < 0
+        || count > Integer.MAX_VALUE / STRONG_LENGTH || basisLength / blockSize != count) {
+      throw new IOException("Corrupt delta signature");
+    }
+    int[] weak = new int[count];
+    byte[] strong = new byte[count * STRONG_LENGTH];
+    for (int block = 0; block < count; block++) {
+      weak[block] = data.readInt();
+      data.readFully(strong, block * STRONG_LENGTH, STRONG_LENGTH);
+    }
+    return new DeltaSignature(blockSize, basisLength, weak, strong);
+  }
+
+  /**
+   * Writes this signature to a stream, which is flushed but not closed.
+   *
+   * @param out the stream to write to
+   * @throws IOException if the stream cannot be written
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+    data.writeInt(MAGIC);
+    data.writeInt(blockSize);
+    data.writeLong(basisLength);
+    data.writeInt(weak.length);
+    for (int block = 0; block < weak.length; block++) {
+      data.writeInt(weak[block]);
+      data.write(strong, block * STRONG_LENGTH, STRONG_LENGTH);
+    }
+    data.flush();
+  }
+
+  /**
+   * {@return the block size in bytes}
+   */
+  public int blockSize() {
+    return blockSize;
+  }
+
+  /**
+   * {@return the number of complete blocks in the basis}
+   */
+  public int blockCount() {
+    return weak.length;
+  }
+
+  /**
+   * {@return the length of the basis in bytes}
+   */
+  public long basisLength() {
+    return basisLength;
+  }
+
+  /**
+   * {@return the first block with a weak checksum in the same bucket as {@code weakChecksum}, or
+   * -1 if there is none}
+   */
+  int firstCandidate(int weakChecksum) {
+    int hash = spread(weakChecksum);
+    int bit = hash >>> filterShift;
+    if ((filter[bit >>> 6] & (1L << bit)) == 0) {
+      return -1;
+    }
+    return buckets[hash >>> bucketShift];
+  }
+
+  /**
+   * {@return the block after {@code block} in its bucket, or -1 if there is none}
+   */
+  int nextCandidate(int block) {
+    return chains[block];
+  }
+
+  int weak(int block) {
+    return weak[block];
+  }
+
+  /**
+   * Tests whether the strong checksum of a block equals the given one.
+   */
+  boolean strongMatches(int block, byte[] checksum) {
+    int offset = block * STRONG_LENGTH;
+    return Arrays.equals(strong, offset, offset + STRONG_LENGTH, checksum, 0, STRONG_LENGTH);
+  }
+
+  /**
+   * Stores the strong checksum of the remaining bytes of {@code block} in {@code dst}, advancing
+   * the position of {@code block}.
+   */
+  static void strongChecksum(ByteBuffer block, byte[] dst, int offset) {
+    byte[] digest = HashFunctions.sha256().init().putBytes(block).digest().bytes();
+    System.arraycopy(digest, 0, dst, offset, STRONG_LENGTH);
+  }
+
+  /**
+   * Multiplicative (Fibonacci) hashing, whose high bits depend on every bit of the checksum. It is
+   * cheap enough to apply at every offset of the new file.
+   */
+  private static int spread(int weakChecksum) {
+    return weakChecksum * 0x9e3779b9;
+  }
+
+  static void checkBlockSize(int blockSize) {
+    if (blockSize <= 0 || blockSize > MAX_BLOCK_SIZE) {
+      throw new IllegalArgumentException("Block size must be between 1 and " + MAX_BLOCK_SIZE);
+    }
+  }
+
+  private static int defaultBlockSize(long length) {
+    long size = (long) Math.sqrt((double) length) & -8L;
+    return (int) Math.max(MIN_DEFAULT_BLOCK_SIZE, Math.min(MAX_DEFAULT_BLOCK_SIZE, size));
+  }
+
+  @Override
+  public String toString() {
+    return "DeltaSignature{"
+        + "blockSize=" + blockSize
+        + ", basisLength=" + basisLength
+        + ", blockCount=" + weak.length
+        + '}';
+  }
+}
@@ -1,6 +1,9 @@
 package com.github.benjaminmoran.superfluous.hash;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 import java.util.HexFormat;
 import java.util.Objects;
@@ -9,6 +12,9 @@ import java.util.Objects;
  * An immutable wrapper for a byte array, tagged with the hash function which created it.
  */
 public final class Digest {
+  private static final VarHandle LONGS =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
   private final HashFunction algorithm;
   private final byte[] bytes;
 
@@ -42,6 +48,81 @@ public final class Digest {
     return bytes.clone();
   }
 
+  /**
+   * {@return the number of bytes in this digest}
+   */
+  int length() {
+    return bytes.length;
+  }
+
+  /**
+   * Reads eight bytes of this digest as a big-endian {@code long}, without copying the digest.
+   *
+   * @param offset the index of the first byte to read
+   * @return the bytes at {@code offset} to {@code offset + 7}
+   */
+  long longAt(int offset) {
+    return (long) LONGS.get(bytes, offset);
+  }
+
+  /**
+   * Copies the bytes of this digest into a buffer, without changing its position.
+   *
+   * @param dst   the buffer to write to
+   * @param index the index in {@code dst} of the first byte to write
+   */
+  void writeTo(ByteBuffer dst, int index) {
+    dst.put(index, bytes);
+  }
+
+  /**
+   * Compares this digest with bytes in a buffer as unsigned big-endian numbers, without changing
+   * the buffer's position.
+   *
+   * @param src   the buffer to compare with, in big-endian byte order
+   * @param index the index in {@code src} of the first byte to compare
+   * @return a negative number, zero or a positive number as this digest is less than, equal to or
+   *     greater than the bytes from {@code index}
+   */
+  int compareTo(ByteBuffer src, int index) {
+    int i = 0;
+    for (; i <= bytes.length - Long.BYTES; i += Long.BYTES) {
+      int cmp = Long.compareUnsigned(longAt(i), src.getLong(index + i));
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    for (; i < bytes.length; i++) {
+      int cmp = Byte.compareUnsigned(bytes[i], src.get(index + i));
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Tests whether a buffer contains the bytes of this digest, without changing its position.
+   *
+   * @param src   the buffer to compare with, in big-endian byte order
+   * @param index the index in {@code src} of the first byte to compare
+   * @return true if the bytes from {@code index} match this digest; false otherwise
+   */
+  boolean matches(ByteBuffer src, int index) {
+    int i = 0;
+    for (; i <= bytes.length - Long.BYTES; i += Long.BYTES) {
+      if (src.getLong(index + i) != longAt(i)) {
+        return false;
+      }
+    }
+    for (; i < bytes.length; i++) {
+      if (src.get(index + i) != bytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * {@return a hexadecimal representation of this digest}
    */
@@ -0,0 +1,192 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * A Bloom filter over digests, for fast probabilistic membership tests.
+ * <p>
+ * {@link #mightContain(Digest)} never returns false for a digest which has been {@link #put(Digest)
+ * put} into the filter, and rarely returns true for one which has not. The probe positions are
+ * taken directly from the first 16 bytes of the digest, which must therefore be the output of a
+ * hash function whose bits are uniformly distributed (such as {@link HashFunctions#sha256()}).
+ * <p>
+ * The bits are stored outside the heap, either in direct memory or in a memory-mapped file. All
+ * methods are thread-safe and lock-free.
+ */
+public final class DigestBloomFilter {
+  private static final long MAGIC = 0x314d4f4f4c424653L; // "SFBLOOM1", little-endian
+  private static final int HEADER_LONGS = 2;
+  private static final int MAX_HASHES = 32;
+  private static final int MAX_WORDS = Integer.MAX_VALUE / Long.BYTES - HEADER_LONGS;
+
+  private final AtomicLongBuffer words;
+  private final int hashCount;
+  private final long bitCount;
+
+  private DigestBloomFilter(AtomicLongBuffer words, int hashCount) {
+    this.words = words;
+    this.hashCount = hashCount;
+    this.bitCount = (long) Long.SIZE * (words.length() - HEADER_LONGS);
+  }
+
+  /**
+   * Creates an empty filter in direct memory.
+   *
+   * @param expectedInsertions the number of digests the filter is sized for (must be positive)
+   * @param falsePositiveRate  the desired false positive rate at that size (between 0 and 1)
+   * @return a new filter
+   */
+  public static DigestBloomFilter create(long expectedInsertions, double falsePositiveRate) {
+    int wordCount = wordCount(expectedInsertions, falsePositiveRate);
+    AtomicLongBuffer words = AtomicLongBuffer.allocate(HEADER_LONGS + wordCount);
+    return initialize(words, hashCount(expectedInsertions, wordCount));
+  }
+
+  /**
+   * Creates an empty filter backed by a new memory-mapped file.
+   *
+   * @param file               the file to create, which must not already exist
+   * @param expectedInsertions the number of digests the filter is sized for (must be positive)
+   * @param falsePositiveRate  the desired false positive rate at that size (between 0 and 1)
+   * @return a new filter
+   * @throws IOException if the file cannot be created
+   */
+  public static DigestBloomFilter create(
+      Path file, long expectedInsertions, double falsePositiveRate) throws IOException {
+    Objects.requireNonNull(file);
+    int wordCount = wordCount(expectedInsertions, falsePositiveRate);
+    AtomicLongBuffer words = AtomicLongBuffer.createFile(file, HEADER_LONGS + wordCount);
+    return initialize(words, hashCount(expectedInsertions, wordCount));
+  }
+
+  /**
+   * Opens a filter previously created with {@link #create(Path, long, double)}.
+   *
+   * @param file the file backing the filter
+   * @return a filter backed by {@code file}
+   * @throws IOException if the file cannot be opened or does not contain a Bloom filter
+   */
+  public static DigestBloomFilter open(Path file) throws IOException {
+    AtomicLongBuffer words = AtomicLongBuffer.openFile(Objects.requireNonNull(file));
+    if (words.length() <= HEADER_LONGS || words.get(0) != MAGIC) {
+      throw new IOException("Not a Bloom filter file: " + file);
+    }
+    long hashCount = words.get(1);
+    if (hashCount <= 0 || hashCount > MAX_HASHES) {
+      throw new IOException("Invalid hash count in Bloom filter file: " + file);
+    }
+    return new DigestBloomFilter(words, (int) hashCount);
+  }
+
+  private static DigestBloomFilter initialize(AtomicLongBuffer words, int hashCount) {
+    words.set(1, hashCount);
+    words.set(0, MAGIC);
+    return new DigestBloomFilter(words, hashCount);
+  }
+
+  private static int wordCount(long expectedInsertions, double falsePositiveRate) {
+    if (expectedInsertions <= 0) {
+      throw new IllegalArgumentException("Expected insertions must be positive");
+    }
+    if (!(falsePositiveRate > 0.0 && falsePositiveRate < 1.0)) {
+      throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+    }
+    double bits = -expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+    double wordCount = Math.ceil(bits / Long.SIZE);
+    if (wordCount > MAX_WORDS) {
+      throw new IllegalArgumentException("Filter would be too large");
+    }
+    return (int) Math.max(1.0, wordCount);
+  }
+
+  private static int hashCount(long expectedInsertions, int wordCount) {
+    double bitsPerElement = (double) Long.SIZE * wordCount / expectedInsertions;
+    long hashCount = Math.round(bitsPerElement * Math.log(2));
+    return (int) Math.max(1L, Math.min(MAX_HASHES, hashCount));
+  }
+
+  /**
+   * Adds a digest to this filter.
+   *
+   * @param digest the digest to add (at least 16 bytes long)
+   * @return true if the bits of this filter changed; false if the digest might already have been
+   *     added
+   */
+  public boolean put(Digest digest) {
+    long h1 = probeBase(digest);
+    long h2 = probeStep(digest);
+    boolean changed = false;
+    for (int i = 0; i < hashCount; i++) {
+      long bit = bitIndex(h1 + i * h2);
+      int word = HEADER_LONGS + (int) (bit >>> 6);
+      long mask = 1L << bit;
+      // Skip the atomic write when the bit is already set, to keep hot cache lines shared
+      if ((words.get(word) & mask) == 0 && (words.getAndBitwiseOr(word, mask) & mask) == 0) {
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Tests whether a digest might have been added to this filter.
+   *
+   * @param digest the digest to test (at least 16 bytes long)
+   * @return false if {@code digest} has definitely not been added; true otherwise
+   */
+  public boolean mightContain(Digest digest) {
+    long h1 = probeBase(digest);
+    long h2 = probeStep(digest);
+    for (int i = 0; i < hashCount; i++) {
+      long bit = bitIndex(h1 + i * h2);
+      if ((words.get(HEADER_LONGS + (int) (bit >>> 6)) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes any changes to a file-backed filter to storage. Does nothing for a filter in direct
+   * memory.
+   */
+  public void force() {
+    words.force();
+  }
+
+  /**
+   * {@return the number of bits probed for each digest}
+   */
+  public int hashCount() {
+    return hashCount;
+  }
+
+  /**
+   * {@return the number of bits in this filter}
+   */
+  public long bitCount() {
+    return bitCount;
+  }
+
+  private static long probeBase(Digest digest) {
+    if (digest.length() < 2 * Long.BYTES) {
+      throw new IllegalArgumentException("Digest must be at least 16 bytes long");
+    }
+    return digest.longAt(0);
+  }
+
+  private static long probeStep(Digest digest) {
+    // An odd step visits distinct positions even if bitCount is a power of two
+    return digest.longAt(Long.BYTES) | 1L;
+  }
+
+  /**
+   * Maps a uniformly distributed 64-bit value to {@code [0, bitCount)} without division, by taking
+   * the high word of the unsigned product.
+   */
+  private long bitIndex(long hash) {
+    return Math.multiplyHigh(hash, bitCount) + ((hash >> 63) & bitCount);
+  }
+}
@@ -0,0 +1,353 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A cuckoo filter over digests, for fast probabilistic membership tests with deletion.
+ * <p>
+ * {@link #mightContain(Digest)} never returns false for a digest which has been {@link #put(Digest)
+ * put} into the filter and not {@link #remove(Digest) removed}, and rarely returns true otherwise.
+ * Each digest is reduced to a 16-bit fingerprint stored in one of two candidate buckets. The bucket
+ * and fingerprint are taken directly from the first 16 bytes of the digest, which must therefore be
+ * the output of a hash function whose bits are uniformly distributed (such as
+ * {@link HashFunctions#sha256()}).
+ * <p>
+ * A bucket holds four fingerprints packed into one {@code long}, so a lookup reads at most two
+ * words. The buckets are stored outside the heap, either in direct memory or in a memory-mapped
+ * file. All methods are thread-safe. Lookups, removals and insertions into a bucket with a free slot
+ * are lock-free; an insertion which has to relocate existing fingerprints takes a lock, and moves
+ * each fingerprint by copying it before erasing the original so that concurrent lookups never miss
+ * it.
+ */
+public final class DigestCuckooFilter {
+  private static final long MAGIC = 0x314f4f4b43554353L; // "SCUCKOO1", little-endian
+  private static final int HEADER_LONGS = 2;
+  private static final int SLOTS_PER_BUCKET = 4;
+  private static final int FINGERPRINT_BITS = 16;
+  private static final long FINGERPRINT_MASK = (1L << FINGERPRINT_BITS) - 1;
+  private static final long LOW_BITS = 0x0001000100010001L;
+  private static final long HIGH_BITS = 0x8000800080008000L;
+  private static final int MAX_BUCKETS = Integer.highestOneBit(
+      Integer.MAX_VALUE / Long.BYTES - HEADER_LONGS);
+  private static final int MAX_KICKS = 500;
+  private static final int MAX_ATTEMPTS = 8;
+  private static final double LOAD_FACTOR = 0.95;
+
+  private final AtomicLongBuffer buckets;
+  private final int bucketMask;
+  private final Object relocationLock = new Object();
+
+  private DigestCuckooFilter(AtomicLongBuffer buckets) {
+    this.buckets = buckets;
+    this.bucketMask = buckets.length() - HEADER_LONGS - 1;
+  }
+
+  /**
+   * Creates an empty filter in direct memory.
+   *
+   * @param capacity the number of digests the filter is sized for (must be positive)
+   * @return a new filter
+   */
+  public static DigestCuckooFilter create(long capacity) {
+    AtomicLongBuffer buckets = AtomicLongBuffer.allocate(HEADER_LONGS + bucketCount(capacity));
+    return initialize(buckets);
+  }
+
+  /**
+   * Creates an empty filter backed by a new memory-mapped file.
+   *
+   * @param file     the file to create, which must not already exist
+   * @param capacity the number of digests the filter is sized for (must be positive)
+   * @return a new filter
+   * @throws IOException if the file cannot be created
+   */
+  public static DigestCuckooFilter create(Path file, long capacity) throws IOException {
+    Objects.requireNonNull(file);
+    int bucketCount = bucketCount(capacity);
+    return initialize(AtomicLongBuffer.createFile(file, HEADER_LONGS + bucketCount));
+  }
+
+  /**
+   * Opens a filter previously created with {@link #create(Path, long)}.
+   *
+   * @param file the file backing the filter
+   * @return a filter backed by {@code file}
+   * @throws IOException if the file cannot be opened or does not contain a cuckoo filter
+   */
+  public static DigestCuckooFilter open(Path file) throws IOException {
+    AtomicLongBuffer buckets = AtomicLongBuffer.openFile(Objects.requireNonNull(file));
+    int bucketCount = buckets.length() - HEADER_LONGS;
+    if (bucketCount <= 0 || buckets.get(0) != MAGIC || buckets.get(1) != bucketCount
+        || Integer.bitCount(bucketCount) != 1) {
+      throw new IOException("Not a cuckoo filter file: " + file);
+    }
+    return new DigestCuckooFilter(buckets);
+  }
+
+  private static DigestCuckooFilter initialize(AtomicLongBuffer buckets) {
+    buckets.set(1, buckets.length() - HEADER_LONGS);
+    buckets.set(0, MAGIC);
+    return new DigestCuckooFilter(buckets);
+  }
+
+  private static int bucketCount(long capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive");
+    }
+    double minBuckets = Math.ceil(capacity / (SLOTS_PER_BUCKET * LOAD_FACTOR));
+    if (minBuckets > MAX_BUCKETS) {
+      throw new IllegalArgumentException("Filter would be too large");
+    }
+    // A power of two lets the alternate bucket be computed by XOR in both directions
+    int buckets = (int) minBuckets;
+    return buckets <= 1 ? 1 : Integer.highestOneBit(buckets - 1) << 1;
+  }
+
+  /**
+   * Adds a digest to this filter.
+   * <p>
+   * Adding the same digest more than once stores more than one copy of its fingerprint, each of
+   * which must be removed separately.
+   *
+   * @param digest the digest to add (at least 16 bytes long)
+   * @return true if the digest was added; false if the filter is too full
+   */
+  public boolean put(Digest digest) {
+    long fingerprint = fingerprint(digest);
+    int bucket1 = primaryBucket(digest);
+    int bucket2 = alternateBucket(bucket1, fingerprint);
+    if (tryInsert(bucket1, fingerprint) || tryInsert(bucket2, fingerprint)) {
+      return true;
+    }
+    synchronized (relocationLock) {
+      for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+        if (tryInsert(bucket1, fingerprint) || tryInsert(bucket2, fingerprint)) {
+          return true;
+        }
+        int start = ThreadLocalRandom.current().nextBoolean() ? bucket1 : bucket2;
+        if (relocateAndInsert(start, fingerprint)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Tests whether a digest might have been added to this filter.
+   *
+   * @param digest the digest to test (at least 16 bytes long)
+   * @return false if {@code digest} is definitely not present; true otherwise
+   */
+  public boolean mightContain(Digest digest) {
+    long fingerprint = fingerprint(digest);
+    int bucket1 = primaryBucket(digest);
+    return containsFingerprint(bucketWord(bucket1), fingerprint)
+        || containsFingerprint(bucketWord(alternateBucket(bucket1, fingerprint)), fingerprint);
+  }
+
+  /**
+   * Removes one copy of a digest from this filter.
+   * <p>
+   * Only digests which have been added may be removed; removing any other digest may cause a
+   * colliding digest to be forgotten.
+   *
+   * @param digest the digest to remove (at least 16 bytes long)
+   * @return true if a matching fingerprint was removed; false otherwise
+   */
+  public boolean remove(Digest digest) {
+    long fingerprint = fingerprint(digest);
+    int bucket1 = primaryBucket(digest);
+    return tryRemove(bucket1, fingerprint)
+        || tryRemove(alternateBucket(bucket1, fingerprint), fingerprint);
+  }
+
+  /**
+   * Writes any changes to a file-backed filter to storage. Does nothing for a filter in direct
+   * memory.
+   */
+  public void force() {
+    buckets.force();
+  }
+
+  /**
+   * {@return the number of buckets in this filter, each of which holds four fingerprints}
+   */
+  public int bucketCount() {
+    return bucketMask + 1;
+  }
+
+  private static long fingerprint(Digest digest) {
+    if (digest.length() < 2 * Long.BYTES) {
+      throw new IllegalArgumentException("Digest must be at least 16 bytes long");
+    }
+    long fingerprint = digest.longAt(Long.BYTES) >>> (Long.SIZE - FINGERPRINT_BITS);
+    // Zero marks an empty slot
+    return fingerprint == 0 ? 1 : fingerprint;
+  }
+
+  private int primaryBucket(Digest digest) {
+    return (int) digest.longAt(0) & bucketMask;
+  }
+
+  private int alternateBucket(int bucket, long fingerprint) {
+    return (bucket ^ (int) (fingerprint * 0x5bd1e995L)) & bucketMask;
+  }
+
+  private long bucketWord(int bucket) {
+    return buckets.get(HEADER_LONGS + bucket);
+  }
+
+  private static long slot(long word, int slot) {
+    return (word >>> (FINGERPRINT_BITS * slot)) & FINGERPRINT_MASK;
+  }
+
+  private static boolean containsFingerprint(long word, long fingerprint) {
+    // Finds a zero 16-bit lane in word ^ (fingerprint in every lane), without branching per slot
+    long x = word ^ (fingerprint * LOW_BITS);
+    return ((x - LOW_BITS) & ~x & HIGH_BITS) != 0;
+  }
+
+  private static int emptySlot(long word) {
+    for (int slot = 0; slot < SLOTS_PER_BUCKET; slot++) {
+      if (slot(word, slot) == 0) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  private boolean tryInsert(int bucket, long fingerprint) {
+    while (true) {
+      long word = bucketWord(bucket);
+      int slot = emptySlot(word);
+      if (slot < 0) {
+        return false;
+      }
+      if (compareAndSetSlot(bucket, word, slot, fingerprint)) {
+        return true;
+      }
+    }
+  }
+
+  private boolean tryRemove(int bucket, long fingerprint) {
+    while (true) {
+      long word = bucketWord(bucket);
+      int match = -1;
+      for (int slot = 0; slot < SLOTS_PER_BUCKET; slot++) {
+        if (slot(word, slot) == fingerprint) {
+          match = slot;
+          break;
+        }
+      }
+      if (match < 0) {
+        return false;
+      }
+      if (compareAndSetSlot(bucket, word, match, 0L)) {
+        return true;
+      }
+    }
+  }
+
+  private boolean compareAndSetSlot(int bucket, long word, int slot, long value) {
+    int shift = FINGERPRINT_BITS * slot;
+    long newWord = (word & ~(FINGERPRINT_MASK << shift)) | (value << shift);
+    return buckets.compareAndSet(HEADER_LONGS + bucket, word, newWord);
+  }
+
+  /**
+   * Replaces the fingerprint in one slot, if it still holds the expected value.
+   */
+  private boolean replaceSlot(int bucket, int slot, long expected, long value) {
+    while (true) {
+      long word = bucketWord(bucket);
+      if (slot(word, slot) != expected) {
+        return false;
+      }
+      if (compareAndSetSlot(bucket, word, slot, value)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Finds a chain of fingerprints, starting in {@code start}, which can each be moved to their
+   * alternate bucket to free a slot, then performs the moves and inserts {@code fingerprint}.
+   * Must be called while holding {@code relocationLock}.
+   */
+  private boolean relocateAndInsert(int start, long fingerprint) {
+    int[] pathBuckets = new int[MAX_KICKS];
+    int[] pathSlots = new int[MAX_KICKS];
+    long[] pathFingerprints = new long[MAX_KICKS];
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+
+    // Walk the chain without modifying the table
+    int bucket = start;
+    int length = 0;
+    int freeBucket = -1;
+    int freeSlot = -1;
+    while (length < MAX_KICKS) {
+      int slot = random.nextInt(SLOTS_PER_BUCKET);
+      for (int i = 0; i < length; i++) {
+        if (pathBuckets[i] == bucket && pathSlots[i] == slot) {
+          return false; // The walk has looped back on itself
+        }
+      }
+      long victim = slot(bucketWord(bucket), slot);
+      if (victim == 0) {
+        return false; // A concurrent removal freed this slot; start again
+      }
+      pathBuckets[length] = bucket;
+      pathSlots[length] = slot;
+      pathFingerprints[length] = victim;
+      length++;
+      bucket = alternateBucket(bucket, victim);
+      freeSlot = emptySlot(bucketWord(bucket));
+      if (freeSlot >= 0) {
+        freeBucket = bucket;
+        break;
+      }
+    }
+    if (freeBucket < 0) {
+      return false;
+    }
+
+    // Move each victim from the end of the chain backwards, copying before overwriting
+    int toBucket = freeBucket;
+    int toSlot = freeSlot;
+    long toExpected = 0L;
+    for (int i = length - 1; i >= -1; i--) {
+      long moving = i >= 0 ? pathFingerprints[i] : fingerprint;
+      if (!replaceSlot(toBucket, toSlot, toExpected, moving)) {
+        undoMoves(pathBuckets, pathSlots, pathFingerprints, i + 1, length, freeBucket, freeSlot);
+        return false;
+      }
+      if (i >= 0) {
+        toBucket = pathBuckets[i];
+        toSlot = pathSlots[i];
+        toExpected = pathFingerprints[i];
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reverses the moves of {@code pathFingerprints[from..length)} after a concurrent modification
+   * interrupted a relocation, so that no fingerprint is left stored twice.
+   */
+  private void undoMoves(int[] pathBuckets, int[] pathSlots, long[] pathFingerprints,
+      int from, int length, int freeBucket, int freeSlot) {
+    for (int i = from; i < length; i++) {
+      boolean last = i == length - 1;
+      int bucket = last ? freeBucket : pathBuckets[i + 1];
+      int slot = last ? freeSlot : pathSlots[i + 1];
+      long previous = last ? 0L : pathFingerprints[i + 1];
+      if (!replaceSlot(bucket, slot, pathFingerprints[i], previous)) {
+        return; // Best effort: a duplicate fingerprint only costs one slot
+      }
+    }
+  }
+}
@@ -0,0 +1,405 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A read-only set of digests, stored in a sorted file and searched through a memory mapping.
+ * <p>
+ * The file consists of a 32-byte header, a fan-out table and the digests themselves as raw
+ * records in ascending order. Entry {@code i} of the fan-out table is the number of digests whose
+ * leading bits are less than {@code i}, so it gives the range of records sharing those bits.
+ * Within a range, {@link #contains(Digest)} guesses the position of a digest by interpolation and
+ * then searches around the guess. Since the digests of a good hash function are uniformly
+ * distributed, the first guess is usually within a few records, and a lookup touches one or two
+ * pages.
+ * <p>
+ * Opening an index maps the file without reading it, and the digests stay outside the heap. Files
+ * are created with {@link #write(Path, HashFunction, Iterable)}. Instances are thread-safe.
+ * <p>
+ * Basic usage:
+ * <pre>{@code
+ * DigestIndex.write(Path.of("known-good.idx"), HashFunctions.sha256(), digests);
+ * DigestIndex index = DigestIndex.open(Path.of("known-good.idx"));
+ * boolean known = index.contains(HashFunctions.sha256().hash(data));
+ * }</pre>
+ */
+public final class DigestIndex {
+  private static final int MAGIC = 0x53464458; // "SFDX"
+  private static final int HEADER_SIZE = 32;
+  private static final int MIN_FANOUT_BITS = 8;
+  private static final int MAX_FANOUT_BITS = 20;
+  /**
+   * Records are mapped in segments of at most this many bytes.
+   */
+  private static final int MAX_SEGMENT_SIZE = 1 << 30;
+  /**
+   * Ranges of at most this many records are scanned rather than searched.
+   */
+  private static final int SCAN_THRESHOLD = 8;
+  /**
+   * The number of interpolation steps before falling back to binary search, which bounds the cost
+   * of a lookup when the digests are not uniformly distributed.
+   */
+  private static final int MAX_INTERPOLATIONS = 4;
+  private static final int INSERTION_SORT_THRESHOLD = 32;
+  private static final VarHandle LONGS =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+  private final int digestLength;
+  private final int fanoutBits;
+  private final long size;
+  private final MappedByteBuffer fanout;
+  private final MappedByteBuffer[] segments;
+  private final int recordsPerSegment;
+
+  private DigestIndex(int digestLength, int fanoutBits, long size, MappedByteBuffer fanout,
+      MappedByteBuffer[] segments, int recordsPerSegment) {
+    this.digestLength = digestLength;
+    this.fanoutBits = fanoutBits;
+    this.size = size;
+    this.fanout = fanout;
+    this.segments = segments;
+    this.recordsPerSegment = recordsPerSegment;
+  }
+
+  /**
+   * Writes an index of the given digests to a file, replacing it atomically if it exists.
+   * <p>
+   * The digests are sorted in memory, so they must fit in the heap while the file is written.
+   * Duplicates are stored once.
+   *
+   * @param file     the file to write
+   * @param function the hash function which created the digests; its digests must be at least 8
+   *                 bytes long
+   * @param digests  the digests to store
+   * @return the number of distinct digests written
+   * @throws IOException if the file cannot be written
+   */
+  public static long write(Path file, HashFunction function, Iterable<Digest> digests)
+      throws IOException {
+    Objects.requireNonNull(file);
+    int length = function.digestLength();
+    if (length < Long.BYTES) {
+      throw new IllegalArgumentException("Digest length must be at least " + Long.BYTES);
+    }
+    // Distributing by the leading byte is the first pass of the radix sort
+    RecordBuffer[] buckets = new RecordBuffer[1 << Byte.SIZE];
+    for (Digest digest : digests) {
+      if (digest.length() != length) {
+        throw new IllegalArgumentException("Digest length must be " + length);
+      }
+      int bucket = (int) (digest.longAt(0) >>> (Long.SIZE - Byte.SIZE));
+      if (buckets[bucket] == null) {
+        buckets[bucket] = new RecordBuffer(length);
+      }
+      buckets[bucket].add(digest);
+    }
+    long count = 0;
+    for (RecordBuffer bucket : buckets) {
+      if (bucket != null) {
+        sort(bucket.records, length, 0, bucket.count, 1, new byte[length]);
+        bucket.count = deduplicate(bucket.records, length, bucket.count);
+        count += bucket.count;
+      }
+    }
+
+    int fanoutBits = fanoutBits(count);
+    long[] fanout = new long[(1 << fanoutBits) + 1];
+    for (RecordBuffer bucket : buckets) {
+      for (int i = 0; bucket != null && i < bucket.count; i++) {
+        long key = (long) LONGS.get(bucket.records, i * length);
+        fanout[(int) (key >>> (Long.SIZE - fanoutBits)) + 1]++;
+      }
+    }
+    for (int i = 1; i < fanout.length; i++) {
+      fanout[i] += fanout[i - 1];
+    }
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + fanout.length * Long.BYTES)
+        .putInt(MAGIC)
+        .putInt(length)
+        .putInt(fanoutBits)
+        .putInt(0)
+        .putLong(count)
+        .putLong(0);
+    for (long entry : fanout) {
+      header.putLong(entry);
+    }
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      writeFully(channel, header.flip());
+      for (RecordBuffer bucket : buckets) {
+        if (bucket != null) {
+          writeFully(channel, ByteBuffer.wrap(bucket.records, 0, bucket.count * length));
+        }
+      }
+      channel.force(true);
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    return count;
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /**
+   * {@return the number of leading bits to index, for about 8 to 16 records per range}
+   */
+  private static int fanoutBits(long count) {
+    int bits = Long.SIZE - 1 - Long.numberOfLeadingZeros(Math.max(count, 1)) - 3;
+    return Math.max(MIN_FANOUT_BITS, Math.min(MAX_FANOUT_BITS, bits));
+  }
+
+  /**
+   * Sorts records {@code [from, to)} by their bytes from {@code depth} onwards, with an in-place
+   * most-significant-digit radix sort (American flag sort).
+   */
+  private static void sort(byte[] records, int length, int from, int to, int depth, byte[] temp) {
+    if (to - from < INSERTION_SORT_THRESHOLD) {
+      insertionSort(records, length, from, to, depth, temp);
+      return;
+    }
+    int[] next = new int[(1 << Byte.SIZE) + 1];
+    for (int i = from; i < to; i++) {
+      next[(records[i * length + depth] & 0xff) + 1]++;
+    }
+    next[0] = from;
+    for (int b = 1; b < next.length; b++) {
+      next[b] += next[b - 1];
+    }
+    int[] ends = Arrays.copyOfRange(next, 1, next.length);
+    // Move each record into its bucket, following cycles of displaced records
+    for (int b = 0; b < ends.length; b++) {
+      while (next[b] < ends[b]) {
+        int value = records[next[b] * length + depth] & 0xff;
+        if (value == b) {
+          next[b]++;
+        } else {
+          swap(records, length, next[b], next[value]++, temp);
+        }
+      }
+    }
+    if (depth + 1 < length) {
+      for (int b = 0, start = from; b < ends.length; start = ends[b++]) {
+        if (ends[b] - start > 1) {
+          sort(records, length, start, ends[b], depth + 1, temp);
+        }
+      }
+    }
+  }
+
+  private static void insertionSort(
+      byte[] records, int length, int from, int to, int depth, byte[] temp) {
+    for (int i = from + 1; i < to; i++) {
+      for (int j = i; j > from && compare(records, length, j - 1, j, depth) > 0; j--) {
+        swap(records, length, j - 1, j, temp);
+      }
+    }
+  }
+
+  private static int compare(byte[] records, int length, int a, int b, int depth) {
+    return Arrays.compareUnsigned(records, a * length + depth, (a + 1) * length,
+        records, b * length + depth, (b + 1) * length);
+  }
+
+  private static void swap(byte[] records, int length, int a, int b, byte[] temp) {
+    System.arraycopy(records, a * length, temp, 0, length);
+    System.arraycopy(records, b * length, records, a * length, length);
+    System.arraycopy(temp, 0, records, b * length, length);
+  }
+
+  /**
+   * Removes adjacent duplicates from sorted records.
+   *
+   * @return the number of distinct records
+   */
+  private static int deduplicate(byte[] records, int length, int count) {
+    int distinct = Math.min(count, 1);
+    for (int i = 1; i < count; i++) {
+      if (compare(records, length, distinct - 1, i, 0) != 0) {
+        System.arraycopy(records, i * length, records, distinct * length, length);
+        distinct++;
+      }
+    }
+    return distinct;
+  }
+
+  /**
+   * Opens an index previously written with {@link #write(Path, HashFunction, Iterable)}.
+   *
+   * @param file the index file
+   * @return an index backed by {@code file}
+   * @throws IOException if the file cannot be opened or does not contain a digest index
+   */
+  public static DigestIndex open(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long fileSize = channel.size();
+      if (fileSize < HEADER_SIZE) {
+        throw new IOException("Not a digest index file: " + file);
+      }
+      MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+      if (header.getInt(0) != MAGIC) {
+        throw new IOException("Not a digest index file: " + file);
+      }
+      int digestLength = header.getInt(4);
+      int fanoutBits = header.getInt(8);
+      long size = header.getLong(16);
+      if (digestLength < Long.BYTES || digestLength > MAX_SEGMENT_SIZE
+          || fanoutBits < MIN_FANOUT_BITS || fanoutBits > MAX_FANOUT_BITS
+          || size < 0 || size > (fileSize - HEADER_SIZE) / digestLength) {
+        throw new IOException("Corrupt digest index file: " + file);
+      }
+      long fanoutSize = ((1L << fanoutBits) + 1) * Long.BYTES;
+      long recordsStart = HEADER_SIZE + fanoutSize;
+      if (fileSize != recordsStart + size * digestLength) {
+        throw new IOException("Corrupt digest index file: " + file);
+      }
+      MappedByteBuffer fanout = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, fanoutSize);
+      if (fanout.getLong(0) != 0 || fanout.getLong((int) fanoutSize - Long.BYTES) != size) {
+        throw new IOException("Corrupt digest index file: " + file);
+      }
+      int recordsPerSegment = MAX_SEGMENT_SIZE / digestLength;
+      long segmentSize = (long) recordsPerSegment * digestLength;
+      MappedByteBuffer[] segments =
+          new MappedByteBuffer[(int) ((size + recordsPerSegment - 1) / recordsPerSegment)];
+      for (int s = 0; s < segments.length; s++) {
+        long start = recordsStart + s * segmentSize;
+        segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+            Math.min(segmentSize, fileSize - start));
+      }
+      return new DigestIndex(
+          digestLength, fanoutBits, size, fanout, segments, recordsPerSegment);
+    }
+  }
+
+  /**
+   * {@return the number of digests in this index}
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * {@return the length in bytes of the digests in this index}
+   */
+  public int digestLength() {
+    return digestLength;
+  }
+
+  /**
+   * Tests whether a digest is in this index.
+   *
+   * @param digest the digest to look up, of this index's digest length
+   * @return true if {@code digest} is in this index; false otherwise
+   */
+  public boolean contains(Digest digest) {
+    if (digest.length() != digestLength) {
+      throw new IllegalArgumentException("Digest length must be " + digestLength);
+    }
+    long key = digest.longAt(0);
+    int prefix = (int) (key >>> (Long.SIZE - fanoutBits));
+    long low = fanout.getLong(prefix * Long.BYTES);
+    long high = fanout.getLong((prefix + 1) * Long.BYTES) - 1;
+    for (int step = 0; high - low >= SCAN_THRESHOLD; step++) {
+      long guess;
+      if (step < MAX_INTERPOLATIONS) {
+        long lowKey = keyAt(low);
+        long highKey = keyAt(high);
+        if (Long.compareUnsigned(key, lowKey) < 0 || Long.compareUnsigned(key, highKey) > 0) {
+          return false;
+        }
+        // Where the key would lie if the keys between low and high were evenly spaced
+        double fraction = highKey == lowKey ? 0.5
+            : unsignedToDouble(key - lowKey) / unsignedToDouble(highKey - lowKey);
+        guess = low + (long) (fraction * (high - low));
+      } else {
+        guess = (low + high) >>> 1;
+      }
+      int cmp = compareAt(digest, guess);
+      if (cmp == 0) {
+        return true;
+      } else if (cmp < 0) {
+        high = guess - 1;
+      } else {
+        low = guess + 1;
+      }
+    }
+    for (long i = low; i <= high; i++) {
+      int cmp = compareAt(digest, i);
+      if (cmp <= 0) {
+        return cmp == 0;
+      }
+    }
+    return false;
+  }
+
+  private static double unsignedToDouble(long value) {
+    return (value >>> 1) * 2.0;
+  }
+
+  private long keyAt(long record) {
+    return segment(record).getLong(offset(record));
+  }
+
+  private int compareAt(Digest digest, long record) {
+    return digest.compareTo(segment(record), offset(record));
+  }
+
+  private MappedByteBuffer segment(long record) {
+    return segments[(int) (record / recordsPerSegment)];
+  }
+
+  private int offset(long record) {
+    return (int) (record % recordsPerSegment) * digestLength;
+  }
+
+  @Override
+  public String toString() {
+    return "DigestIndex{"
+        + "digestLength=" + digestLength
+        + ", size=" + size
+        + '}';
+  }
+
+  /**
+   * A growable array of fixed-length records.
+   */
+  private static final class RecordBuffer {
+    private final int length;
+    byte[] records;
+    int count;
+
+    RecordBuffer(int length) {
+      this.length = length;
+      this.records = new byte[16 * length];
+    }
+
+    void add(Digest digest) {
+      if ((count + 1) * (long) length > records.length) {
+        long newSize = Math.min(2L * records.length, Integer.MAX_VALUE - 8);
+        if (newSize < (count + 1) * (long) length) {
+          throw new IllegalArgumentException("Too many digests to sort in memory");
+        }
+        records = Arrays.copyOf(records, (int) newSize);
+      }
+      digest.writeTo(ByteBuffer.wrap(records), count * length);
+      count++;
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+/**
+ * Streams the contents of an object into a {@link Hasher}, so that it can be hashed without first
+ * being serialized to a byte array.
+ * <p>
+ * Implementations should write every field which distinguishes one object from another, using the
+ * {@code put} methods of {@code Hasher}. Variable-length fields should be length-prefixed, so that
+ * distinct objects cannot produce the same message.
+ * <p>
+ * Basic usage:
+ * <pre>{@code
+ * Funnel<Person> personFunnel = (person, into) -> into
+ *     .putLengthPrefixedString(person.name())
+ *     .putInt(person.birthYear());
+ * Digest digest = HashFunctions.sha256().hash(person, personFunnel);
+ * }</pre>
+ *
+ * @param <T> the type of the objects to hash
+ */
+@FunctionalInterface
+public interface Funnel<T> {
+  /**
+   * Appends the contents of an object to the message being hashed.
+   *
+   * @param from the object to hash
+   * @param into the hasher to write to
+   */
+  void funnel(T from, Hasher into);
+}
@@ -80,6 +80,20 @@ public interface HashFunction {
     return init().update(input, offset, length).digest();
   }
 
+  /**
+   * Applies this hash function to the contents of an object, as written by a {@link Funnel}.
+   * <p>
+   * Equivalent to {@code init().putObject(object, funnel).digest()}.
+   *
+   * @param object the object to hash
+   * @param funnel writes the contents of {@code object} to a hasher
+   * @param <T>    the type of the object
+   * @return the digest of the object's contents
+   */
+  default <T> Digest hash(T object, Funnel<? super T> funnel) {
+    return init().putObject(object, Objects.requireNonNull(funnel)).digest();
+  }
+
   /**
    * Allows incremental hashing by creating a stateful {@code Hasher} which can be updated with
    * parts of the message at a time.
@@ -4,7 +4,7 @@ package com.github.benjaminmoran.superfluous.hash;
  * Standard hash functions.
  * <p>
  * The methods in this class return {@link HashFunction} instances which implement popular
- * cryptographic hash functions.
+ * cryptographic hash functions, keyed hash functions and checksums.
  * <p>
  * Basic usage:
  * <pre>{@code
@@ -30,4 +30,59 @@ public final class HashFunctions {
   public static HashFunction sha256() {
     return Sha256Hasher.HASH_FUNCTION;
   }
+
+  /**
+   * {@return the CRC-32C (Castagnoli) checksum}
+   * <p>
+   * Defined in <a href="https://www.rfc-editor.org/rfc/rfc3720#appendix-B.4">RFC 3720, <i>Internet
+   * Small Computer Systems Interface (iSCSI)</i></a>, appendix B.4, 2004. Detects accidental
+   * corruption only; not a cryptographic hash function.
+   * <p>
+   * Digest size: 32 bits
+   */
+  public static CrcFunction crc32c() {
+    return Crc32cHasher.HASH_FUNCTION;
+  }
+
+  /**
+   * {@return the CRC-64/NVME checksum}
+   * <p>
+   * Defined in the <a href="https://nvmexpress.org/specifications/">NVM Express NVM Command Set
+   * Specification</a>, revision 1.0, section 5.2.1.3.4, 2021. Detects accidental corruption only;
+   * not a cryptographic hash function.
+   * <p>
+   * Digest size: 64 bits
+   */
+  public static CrcFunction crc64Nvme() {
+    return Crc64NvmeHasher.HASH_FUNCTION;
+  }
+
+  /**
+   * {@return the SipHash-2-4 keyed hash function with the given key}
+   * <p>
+   * Defined in <a href="https://www.aumasson.jp/siphash/siphash.pdf"><i>SipHash: a fast
+   * short-input PRF</i></a> by Jean-Philippe Aumasson and Daniel J. Bernstein, 2012. Suitable for
+   * hash tables with untrusted keys, if the key is random and secret.
+   * <p>
+   * Digest size: 64 bits
+   *
+   * @param key the 16-byte key
+   */
+  public static SipHashFunction sipHash24(byte[] key) {
+    return SipHashFunction.of(2, 4, key);
+  }
+
+  /**
+   * {@return the SipHash-1-3 keyed hash function with the given key}
+   * <p>
+   * A faster variant of {@link #sipHash24(byte[]) SipHash-2-4} with fewer rounds, used for hash
+   * tables by Python and Rust. Its security margin is smaller, but no practical attack is known.
+   * <p>
+   * Digest size: 64 bits
+   *
+   * @param key the 16-byte key
+   */
+  public static SipHashFunction sipHash13(byte[] key) {
+    return SipHashFunction.of(1, 3, key);
+  }
 }
@@ -1,5 +1,8 @@
 package com.github.benjaminmoran.superfluous.hash;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
 /**
@@ -12,6 +15,11 @@ import java.util.Objects;
  * same digest as {@code algorithm().hash(message)}, where {@code message} is the concatenation of
  * the inputs to {@code update()} in the order received.
  * <p>
+ * The {@code put} methods append values without the caller first encoding them into a byte
+ * array; the hashers in this package implement them without allocating. Each is equivalent to
+ * calling {@code update()} with the encoding described in its documentation; numbers are encoded
+ * in big-endian byte order, consistent with {@link HashFunction}.
+ * <p>
  * The behavior of every method is undefined after {@code digest()} has been called once.
  * Implementations may throw an exception in this case.
  */
@@ -54,6 +62,141 @@ public interface Hasher {
    */
   Hasher update(byte[] input, int offset, int length);
 
+  /**
+   * Appends a single byte to the message to be hashed.
+   *
+   * @param input the byte to append
+   * @return this hasher
+   */
+  default Hasher putByte(byte input) {
+    return update(new byte[] {input}, 0, 1);
+  }
+
+  /**
+   * Appends an {@code int} to the message to be hashed, as 4 bytes in big-endian order.
+   *
+   * @param input the value to append
+   * @return this hasher
+   */
+  default Hasher putInt(int input) {
+    return update(ByteBuffer.allocate(Integer.BYTES).putInt(input).array());
+  }
+
+  /**
+   * Appends a {@code long} to the message to be hashed, as 8 bytes in big-endian order.
+   *
+   * @param input the value to append
+   * @return this hasher
+   */
+  default Hasher putLong(long input) {
+    return update(ByteBuffer.allocate(Long.BYTES).putLong(input).array());
+  }
+
+  /**
+   * Appends a {@code double} to the message to be hashed, as the 8 bytes of
+   * {@link Double#doubleToRawLongBits(double)} in big-endian order.
+   *
+   * @param input the value to append
+   * @return this hasher
+   */
+  default Hasher putDouble(double input) {
+    return putLong(Double.doubleToRawLongBits(input));
+  }
+
+  /**
+   * Appends the remaining bytes of a buffer to the message to be hashed.
+   * <p>
+   * The buffer's position is advanced to its limit; its contents are not modified. Direct buffers
+   * are supported.
+   *
+   * @param input the buffer containing the bytes to append
+   * @return this hasher
+   */
+  default Hasher putBytes(ByteBuffer input) {
+    if (input.hasArray()) {
+      update(input.array(), input.arrayOffset() + input.position(), input.remaining());
+      input.position(input.limit());
+    } else {
+      byte[] chunk = new byte[Math.min(input.remaining(), 4096)];
+      while (input.hasRemaining()) {
+        int length = Math.min(chunk.length, input.remaining());
+        input.get(chunk, 0, length);
+        update(chunk, 0, length);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Appends the UTF-16 code units of a character sequence to the message to be hashed, as 2 bytes
+   * each in big-endian order (the UTF-16BE encoding, for well-formed input).
+   *
+   * @param input the characters to append
+   * @return this hasher
+   */
+  default Hasher putChars(CharSequence input) {
+    CharEncoding.putUtf16(this, input, new byte[CharEncoding.chunkLength(input, 4096)]);
+    return this;
+  }
+
+  /**
+   * Appends a character sequence to the message to be hashed, encoded with the given charset.
+   * <p>
+   * UTF-8 is encoded directly into the hasher a chunk at a time, with unpaired surrogates replaced
+   * by {@code '?'} as in {@link String#getBytes(Charset)}. Other charsets are encoded into a
+   * temporary array first.
+   *
+   * @param input   the characters to append
+   * @param charset the charset to encode {@code input} with
+   * @return this hasher
+   */
+  default Hasher putString(CharSequence input, Charset charset) {
+    Objects.requireNonNull(input);
+    if (!StandardCharsets.UTF_8.equals(charset)) {
+      return update(input.toString().getBytes(charset));
+    }
+    CharEncoding.putUtf8(this, input, new byte[CharEncoding.chunkLength(input, 4096)]);
+    return this;
+  }
+
+  /**
+   * Appends a byte array preceded by its length, as an {@code int} in big-endian order.
+   * <p>
+   * Unlike {@link #update(byte[])}, consecutive calls cannot be confused with a single call on the
+   * concatenation of their inputs.
+   *
+   * @param input the bytes to append
+   * @return this hasher
+   */
+  default Hasher putLengthPrefixed(byte[] input) {
+    return putInt(input.length).update(input);
+  }
+
+  /**
+   * Appends the UTF-8 encoding of a character sequence preceded by its length in bytes, as an
+   * {@code int} in big-endian order.
+   *
+   * @param input the characters to append
+   * @return this hasher
+   * @see #putString(CharSequence, Charset)
+   */
+  default Hasher putLengthPrefixedString(CharSequence input) {
+    return putInt(CharEncoding.utf8Length(input)).putString(input, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Appends the contents of an object to the message to be hashed.
+   *
+   * @param object the object to append
+   * @param funnel writes the contents of {@code object} to this hasher
+   * @param <T>    the type of the object
+   * @return this hasher
+   */
+  default <T> Hasher putObject(T object, Funnel<? super T> funnel) {
+    funnel.funnel(object, this);
+    return this;
+  }
+
   /**
    * {@return the digest of the input received}
    * <p>
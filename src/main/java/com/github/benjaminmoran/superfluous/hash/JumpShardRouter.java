@@ -0,0 +1,40 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.util.List;
+
+/**
+ * Instances of this class can be obtained from {@link ShardRouter#jump(HashFunction, List)}.
+ */
+class JumpShardRouter<S> extends AbstractShardRouter<S> {
+  JumpShardRouter(HashFunction function, List<S> shards) {
+    super(function, shards);
+  }
+
+  @Override
+  protected S routeHash(long hash) {
+    return shards.get(jump(hash, shards.size()));
+  }
+
+  /**
+   * Maps a key to a bucket in {@code [0, buckets)}, moving only {@code 1 / buckets} of the keys
+   * when a bucket is added at the end.
+   */
+  static int jump(long key, int buckets) {
+    long b = -1;
+    long j = 0;
+    while (j < buckets) {
+      b = j;
+      key = key * 2862933555777941757L + 1;
+      j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+    }
+    return (int) b;
+  }
+
+  @Override
+  public String toString() {
+    return "JumpShardRouter{"
+        + "function=" + function
+        + ", shards=" + shards
+        + '}';
+  }
+}
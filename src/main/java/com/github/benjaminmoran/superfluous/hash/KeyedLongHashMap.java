@@ -0,0 +1,217 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * A map from {@code long} keys to objects, resistant to hash flooding.
+ * <p>
+ * Keys are stored unboxed in an open-addressing table with linear probing. Their positions are
+ * chosen by {@link HashFunctions#sipHash13(byte[]) SipHash-1-3} with a random key generated for
+ * each map, so an attacker who chooses the keys cannot make them collide, even with knowledge of
+ * other maps' behavior.
+ * <p>
+ * Null values are not permitted. This class is not thread-safe.
+ *
+ * @param <V> the type of values
+ */
+public final class KeyedLongHashMap<V> {
+  private static final SecureRandom KEY_SOURCE = new SecureRandom();
+  private static final int MIN_CAPACITY = 16;
+  private static final double MAX_LOAD = 0.75;
+
+  private final SipHashFunction function;
+  private long[] keys;
+  /**
+   * The value for each slot, or null if the slot is empty.
+   */
+  private Object[] values;
+  private int mask;
+  private int size;
+
+  /**
+   * Creates an empty map.
+   */
+  public KeyedLongHashMap() {
+    this(0);
+  }
+
+  /**
+   * Creates an empty map with room for the given number of entries before it must grow.
+   *
+   * @param expectedSize the expected number of entries (must be non-negative)
+   */
+  public KeyedLongHashMap(int expectedSize) {
+    if (expectedSize < 0) {
+      throw new IllegalArgumentException("Expected size must be non-negative");
+    }
+    byte[] key = new byte[SipHashFunction.KEY_LENGTH];
+    KEY_SOURCE.nextBytes(key);
+    this.function = HashFunctions.sipHash13(key);
+    allocate(capacityFor(expectedSize));
+  }
+
+  private static int capacityFor(int expectedSize) {
+    long minimum = Math.max(MIN_CAPACITY, (long) Math.ceil(expectedSize / MAX_LOAD));
+    if (minimum > 1 << 30) {
+      throw new IllegalArgumentException("Expected size is too large");
+    }
+    return Integer.highestOneBit((int) minimum - 1) << 1;
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new Object[capacity];
+    mask = capacity - 1;
+  }
+
+  /**
+   * {@return the number of entries in this map}
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * {@return true if this map has no entries}
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * {@return the value for {@code key}, or null if there is none}
+   */
+  @SuppressWarnings("unchecked")
+  public V get(long key) {
+    int slot = find(key);
+    return slot >= 0 ? (V) values[slot] : null;
+  }
+
+  /**
+   * {@return true if this map has an entry for {@code key}}
+   */
+  public boolean containsKey(long key) {
+    return find(key) >= 0;
+  }
+
+  /**
+   * Sets the value for a key.
+   *
+   * @param key   the key
+   * @param value the new value
+   * @return the previous value for {@code key}, or null if there was none
+   */
+  @SuppressWarnings("unchecked")
+  public V put(long key, V value) {
+    Objects.requireNonNull(value);
+    int slot = home(key);
+    for (; values[slot] != null; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        V previous = (V) values[slot];
+        values[slot] = value;
+        return previous;
+      }
+    }
+    if (size + 1 > (mask + 1) * MAX_LOAD) {
+      grow();
+      slot = home(key);
+      while (values[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+    }
+    keys[slot] = key;
+    values[slot] = value;
+    size++;
+    return null;
+  }
+
+  /**
+   * Removes the entry for a key.
+   *
+   * @param key the key
+   * @return the removed value, or null if there was no entry for {@code key}
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(long key) {
+    int slot = find(key);
+    if (slot < 0) {
+      return null;
+    }
+    V previous = (V) values[slot];
+    // Shift later entries of the probe sequence back, so no tombstone is needed
+    int hole = slot;
+    for (int next = (hole + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+      int home = home(keys[next]);
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        keys[hole] = keys[next];
+        values[hole] = values[next];
+        hole = next;
+      }
+    }
+    values[hole] = null;
+    size--;
+    return previous;
+  }
+
+  /**
+   * Removes every entry.
+   */
+  public void clear() {
+    Arrays.fill(values, null);
+    size = 0;
+  }
+
+  /**
+   * Calls {@code action} with every value and its key, in no particular order.
+   *
+   * @param action the action to perform on each entry
+   */
+  @SuppressWarnings("unchecked")
+  public void forEach(ObjLongConsumer<? super V> action) {
+    Objects.requireNonNull(action);
+    for (int slot = 0; slot <= mask; slot++) {
+      if (values[slot] != null) {
+        action.accept((V) values[slot], keys[slot]);
+      }
+    }
+  }
+
+  private int find(long key) {
+    for (int slot = home(key); values[slot] != null; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  private int home(long key) {
+    return (int) function.hashLong(key) & mask;
+  }
+
+  private void grow() {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    allocate(2 * oldKeys.length);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldValues[i] != null) {
+        int slot = home(oldKeys[i]);
+        while (values[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "KeyedLongHashMap{"
+        + "size=" + size
+        + '}';
+  }
+}
@@ -0,0 +1,139 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+/**
+ * A hash function which applies several hash functions to the same message in a single pass.
+ * <p>
+ * The digest of a message is the concatenation of the digests of the component functions, in order.
+ * It can be {@link #split(Digest) split} into the component digests.
+ * <p>
+ * Each call to {@link Hasher#update(byte[], int, int) update()} feeds the input to every component
+ * hasher in small chunks, so that each chunk is still in the CPU cache when the next hasher reads
+ * it. Alternatively, with an {@link #withExecutor(Executor) executor}, large updates are given to
+ * every component hasher at once on separate threads, and the update returns when all have
+ * finished.
+ * <p>
+ * Basic usage:
+ * <pre>{@code
+ * MultiHashFunction function = MultiHashFunction.of(HashFunctions.sha256(), HashFunctions.crc32c());
+ * Map<HashFunction, Digest> digests = function.hashAll("Hello, world!".getBytes());
+ * }</pre>
+ */
+public final class MultiHashFunction implements HashFunction {
+  private final List<HashFunction> functions;
+  private final Executor executor;
+  private final int digestLength;
+  private final String name;
+
+  private MultiHashFunction(List<HashFunction> functions, Executor executor) {
+    this.functions = functions;
+    this.executor = executor;
+    this.digestLength = functions.stream().mapToInt(HashFunction::digestLength).sum();
+    this.name = functions.stream().map(HashFunction::name).collect(Collectors.joining("+"));
+  }
+
+  /**
+   * Combines several hash functions.
+   *
+   * @param functions the distinct functions to apply to each message (at least one)
+   * @return a hash function which applies each of {@code functions}
+   */
+  public static MultiHashFunction of(HashFunction... functions) {
+    return of(List.of(functions));
+  }
+
+  /**
+   * Combines several hash functions.
+   *
+   * @param functions the distinct functions to apply to each message (at least one)
+   * @return a hash function which applies each of {@code functions}
+   */
+  public static MultiHashFunction of(List<HashFunction> functions) {
+    List<HashFunction> copy = List.copyOf(functions);
+    if (copy.isEmpty()) {
+      throw new IllegalArgumentException("There must be at least one hash function");
+    }
+    if (new HashSet<>(copy).size() != copy.size()) {
+      throw new IllegalArgumentException("Hash functions must be distinct");
+    }
+    return new MultiHashFunction(copy, null);
+  }
+
+  /**
+   * Returns a hash function which computes the same digests as this one, but which runs the
+   * component hashers of large updates on separate threads.
+   *
+   * @param executor runs all component hashers but the first, which runs on the calling thread
+   * @return a parallel version of this hash function
+   */
+  public MultiHashFunction withExecutor(Executor executor) {
+    return new MultiHashFunction(functions, Objects.requireNonNull(executor));
+  }
+
+  /**
+   * {@return the hash functions combined by this one, in the order their digests appear}
+   */
+  public List<HashFunction> functions() {
+    return functions;
+  }
+
+  @Override
+  public String name() {
+    return name;
+  }
+
+  @Override
+  public int digestLength() {
+    return digestLength;
+  }
+
+  @Override
+  public Hasher init() {
+    return new MultiHasher(this, executor);
+  }
+
+  /**
+   * Applies every component hash function to the given message.
+   *
+   * @param input the bytes of the message to hash
+   * @return the digest of the message for each component function, in order
+   */
+  public Map<HashFunction, Digest> hashAll(byte[] input) {
+    return split(hash(input));
+  }
+
+  /**
+   * Splits a digest created by this function into the digests of the component functions.
+   *
+   * @param digest a digest of this function's length
+   * @return the digest for each component function, in order
+   */
+  public Map<HashFunction, Digest> split(Digest digest) {
+    if (digest.length() != digestLength) {
+      throw new IllegalArgumentException("Digest length must be " + digestLength);
+    }
+    byte[] bytes = digest.bytes();
+    Map<HashFunction, Digest> digests = new LinkedHashMap<>();
+    int offset = 0;
+    for (HashFunction function : functions) {
+      byte[] part = new byte[function.digestLength()];
+      System.arraycopy(bytes, offset, part, 0, part.length);
+      digests.put(function, Digest.of(function, part));
+      offset += part.length;
+    }
+    return Collections.unmodifiableMap(digests);
+  }
+
+  @Override
+  public String toString() {
+    return name();
+  }
+}
@@ -0,0 +1,96 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Instances of this class can be obtained from {@link MultiHashFunction#init()}.
+ */
+class MultiHasher extends AbstractHasher {
+  /**
+   * Small enough that a chunk stays in the L1 cache while every hasher reads it.
+   */
+  private static final int CHUNK_SIZE = 8 * 1024;
+  /**
+   * Updates smaller than this are not worth handing to other threads.
+   */
+  private static final int PARALLEL_THRESHOLD = 1 << 20;
+
+  private final MultiHashFunction algorithm;
+  private final Executor executor;
+  private final Hasher[] hashers;
+
+  MultiHasher(MultiHashFunction algorithm, Executor executor) {
+    this.algorithm = algorithm;
+    this.executor = executor;
+    List<HashFunction> functions = algorithm.functions();
+    this.hashers = new Hasher[functions.size()];
+    for (int i = 0; i < hashers.length; i++) {
+      hashers[i] = functions.get(i).init();
+    }
+  }
+
+  @Override
+  public HashFunction algorithm() {
+    return algorithm;
+  }
+
+  @Override
+  public Hasher update(byte[] input, int offset, int length) {
+    Objects.requireNonNull(input);
+    Objects.checkFromIndexSize(offset, length, input.length);
+    if (executor != null && hashers.length > 1 && length >= PARALLEL_THRESHOLD) {
+      updateParallel(input, offset, length);
+      return this;
+    }
+    int end = offset + length;
+    for (int chunk = offset; chunk < end; chunk += CHUNK_SIZE) {
+      int chunkLength = Math.min(CHUNK_SIZE, end - chunk);
+      for (Hasher hasher : hashers) {
+        hasher.update(input, chunk, chunkLength);
+      }
+    }
+    return this;
+  }
+
+  private void updateParallel(byte[] input, int offset, int length) {
+    CompletableFuture<?>[] others = new CompletableFuture<?>[hashers.length - 1];
+    for (int i = 1; i < hashers.length; i++) {
+      Hasher hasher = hashers[i];
+      others[i - 1] = CompletableFuture.runAsync(
+          () -> hasher.update(input, offset, length), executor);
+    }
+    hashers[0].update(input, offset, length);
+    // The caller may reuse the input once this returns, so every hasher must be finished with it
+    try {
+      CompletableFuture.allOf(others).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  @Override
+  protected byte[] digestBytes() {
+    byte[] bytes = new byte[algorithm.digestLength()];
+    int offset = 0;
+    for (Hasher hasher : hashers) {
+      byte[] part = hasher.digest().bytes();
+      System.arraycopy(part, 0, bytes, offset, part.length);
+      offset += part.length;
+    }
+    return bytes;
+  }
+
+  @Override
+  public String toString() {
+    return "MultiHasher{"
+        + "algorithm=" + algorithm
+        + '}';
+  }
+}
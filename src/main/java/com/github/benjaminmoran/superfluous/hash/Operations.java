@@ -18,4 +18,17 @@ final class Operations {
   static int majority(int x, int y, int z) {
     return (x & y) ^ (x & z) ^ (y & z);
   }
+
+  /**
+   * Scrambles the bits of a 64-bit value, so that every input bit affects every output bit. This
+   * is the finalizer of MurmurHash3; it is a bijection, but not a cryptographic hash.
+   */
+  static long mix64(long x) {
+    x ^= x >>> 33;
+    x *= 0xff51afd7ed558ccdL;
+    x ^= x >>> 33;
+    x *= 0xc4ceb9fe1a85ec53L;
+    x ^= x >>> 33;
+    return x;
+  }
 }
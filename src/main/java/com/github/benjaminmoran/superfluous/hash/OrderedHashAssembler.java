@@ -0,0 +1,380 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Hashes an object whose bytes arrive as chunks in any order, such as the ranges of a parallel
+ * download.
+ * <p>
+ * As soon as the chunk at the start of the unhashed bytes arrives, it is passed to a {@link Hasher}
+ * along with any chunks it makes contiguous. Chunks which arrive early are copied into a pool of
+ * reusable buffers holding up to {@code memoryLimit} bytes, and beyond that are written to a
+ * temporary file. The digest is therefore ready as soon as the last byte arrives, without buffering
+ * the whole object or reading it again.
+ * <p>
+ * Chunks may be passed from any number of threads, and may overlap each other; bytes already
+ * received are ignored. A thread whose chunk completes the contiguous prefix does the hashing, so
+ * the cost of hashing is spread over the threads delivering the data. Chunks are written to the
+ * temporary file without holding the assembler's lock, so threads spilling to disk do not block
+ * each other.
+ * <p>
+ * Basic usage:
+ * <pre>{@code
+ * try (OrderedHashAssembler assembler =
+ *     OrderedHashAssembler.of(HashFunctions.sha256(), objectSize, 64 << 20)) {
+ *   // in each download thread:
+ *   assembler.accept(rangeStart, rangeBytes);
+ *   // once every range has been accepted:
+ *   Digest digest = assembler.result().join();
+ * }
+ * }</pre>
+ */
+public final class OrderedHashAssembler implements Closeable {
+  /**
+   * The size of the pooled buffers, and of the buffer spilled chunks are read back through.
+   */
+  private static final int BUFFER_SIZE = 1 << 14;
+
+  private final Hasher hasher;
+  private final long totalLength;
+  private final int bufferSize;
+  private final int maxBuffers;
+  private final CompletableFuture<Digest> result = new CompletableFuture<>();
+  /**
+   * Chunks received beyond {@link #frontier}, keyed by offset. They never overlap.
+   */
+  private final TreeMap<Long, Pending> pending = new TreeMap<>();
+  /**
+   * The end of the bytes which have been hashed or are being hashed.
+   */
+  private long frontier;
+  private boolean draining;
+  /**
+   * Pooled buffers not holding a pending chunk. Up to {@link #maxBuffers} are allocated on demand.
+   */
+  private final ArrayDeque<ByteBuffer> freeBuffers = new ArrayDeque<>();
+  private int allocatedBuffers;
+  /**
+   * Used only by the draining thread.
+   */
+  private ByteBuffer readBuffer;
+  private FileChannel spill;
+  private boolean closed;
+
+  private OrderedHashAssembler(HashFunction function, long totalLength, long memoryLimit) {
+    this.hasher = function.init();
+    this.totalLength = totalLength;
+    this.bufferSize = (int) Math.max(1, Math.min(BUFFER_SIZE, memoryLimit));
+    this.maxBuffers = (int) Math.min(Integer.MAX_VALUE, memoryLimit / bufferSize);
+  }
+
+  /**
+   * Creates an assembler for an object of known length.
+   *
+   * @param function    the hash function to apply
+   * @param totalLength the length of the object in bytes (must be non-negative)
+   * @param memoryLimit the maximum number of bytes of buffers to hold early chunks in before
+   *                    writing them to a temporary file (must be non-negative)
+   * @return an assembler whose result is the digest of the object
+   */
+  public static OrderedHashAssembler of(HashFunction function, long totalLength, long memoryLimit) {
+    Objects.requireNonNull(function);
+    if (totalLength < 0) {
+      throw new IllegalArgumentException("Total length must be non-negative");
+    }
+    if (memoryLimit < 0) {
+      throw new IllegalArgumentException("Memory limit must be non-negative");
+    }
+    OrderedHashAssembler assembler = new OrderedHashAssembler(function, totalLength, memoryLimit);
+    if (totalLength == 0) {
+      assembler.result.complete(assembler.hasher.digest());
+    }
+    return assembler;
+  }
+
+  /**
+   * {@return a future which completes with the digest of the object once every byte has been
+   * received}
+   * <p>
+   * The future completes exceptionally if a chunk cannot be written to or read from the temporary
+   * file, and is cancelled if the assembler is closed first.
+   */
+  public CompletableFuture<Digest> result() {
+    return result;
+  }
+
+  /**
+   * Receives the remaining bytes of a buffer as the bytes of the object starting at
+   * {@code offset}.
+   * <p>
+   * The buffer's position is advanced to its limit, and its contents may be reused once this
+   * method returns.
+   *
+   * @param offset the position of the chunk in the object
+   * @param chunk  the bytes of the chunk
+   * @throws IOException if the chunk had to be written to the temporary file and this failed
+   */
+  public void accept(long offset, ByteBuffer chunk) throws IOException {
+    Objects.requireNonNull(chunk);
+    int length = chunk.remaining();
+    if (offset < 0 || offset > totalLength - length) {
+      throw new IllegalArgumentException("Chunk is outside the object");
+    }
+    ByteBuffer claimed = null;
+    List<SpillWrite> writes = null;
+    synchronized (this) {
+      if (closed || result.isCompletedExceptionally()) {
+        throw new IllegalStateException("Assembler is closed");
+      }
+      long end = offset + length;
+      long cursor = Math.max(offset, frontier);
+      Map.Entry<Long, Pending> previous = pending.floorEntry(cursor);
+      if (previous != null) {
+        cursor = Math.max(cursor, previous.getValue().end);
+      }
+      // Keep only the gaps between chunks already received
+      while (cursor < end) {
+        Map.Entry<Long, Pending> next = pending.ceilingEntry(cursor);
+        long gapEnd = next == null ? end : Math.min(end, next.getKey());
+        if (gapEnd > cursor) {
+          ByteBuffer piece = chunk.slice(
+              chunk.position() + (int) (cursor - offset), (int) (gapEnd - cursor));
+          if (cursor == frontier && !draining) {
+            draining = true;
+            frontier = gapEnd;
+            claimed = piece;
+          } else {
+            SpillWrite write = store(cursor, gapEnd, piece);
+            if (write != null) {
+              if (writes == null) {
+                writes = new ArrayList<>();
+              }
+              writes.add(write);
+            }
+          }
+        }
+        cursor = next == null ? end : next.getValue().end;
+      }
+    }
+    if (writes != null) {
+      writeSpilled(writes);
+    }
+    chunk.position(chunk.limit());
+    if (claimed != null) {
+      drain(claimed);
+    }
+  }
+
+  /**
+   * Records a piece of a chunk as pending, copying it into pooled buffers if enough are free.
+   * Otherwise reserves its range of the temporary file, and returns the write for the caller to
+   * perform once it has released the lock.
+   */
+  private SpillWrite store(long start, long end, ByteBuffer piece) throws IOException {
+    int count = (piece.remaining() + bufferSize - 1) / bufferSize;
+    if (count <= freeBuffers.size() + (maxBuffers - allocatedBuffers)) {
+      ByteBuffer[] buffers = new ByteBuffer[count];
+      for (int i = 0; i < count; i++) {
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer == null) {
+          buffer = ByteBuffer.allocate(bufferSize);
+          allocatedBuffers++;
+        }
+        int length = Math.min(bufferSize, piece.remaining());
+        buffers[i] = buffer.clear().put(piece.slice(piece.position(), length)).flip();
+        piece.position(piece.position() + length);
+      }
+      pending.put(start, new Pending(end, buffers, null));
+      return null;
+    }
+    if (spill == null) {
+      try {
+        spill = FileChannel.open(Files.createTempFile("superfluous-", ".spill"),
+            StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.DELETE_ON_CLOSE);
+      } catch (IOException e) {
+        result.completeExceptionally(e);
+        throw e;
+      }
+    }
+    // The temporary file mirrors the object, so each piece has its own range of it
+    Pending stored = new Pending(end, null, new CompletableFuture<>());
+    pending.put(start, stored);
+    return new SpillWrite(spill, start, piece, stored.written);
+  }
+
+  /**
+   * Performs writes reserved by {@link #store}. Each completes the future of its pending chunk,
+   * which the draining thread waits for before reading the chunk back.
+   */
+  private void writeSpilled(List<SpillWrite> writes) throws IOException {
+    Exception failure = null;
+    for (SpillWrite write : writes) {
+      if (failure == null) {
+        try {
+          for (long position = write.position; write.piece.hasRemaining(); ) {
+            position += write.channel.write(write.piece, position);
+          }
+          write.written.complete(null);
+          continue;
+        } catch (IOException | RuntimeException e) {
+          failure = e;
+          result.completeExceptionally(e);
+        }
+      }
+      write.written.completeExceptionally(failure);
+    }
+    if (failure instanceof IOException) {
+      throw (IOException) failure;
+    } else if (failure != null) {
+      throw (RuntimeException) failure;
+    }
+  }
+
+  /**
+   * Hashes {@code first}, then any chunks which continue it. Only one thread drains at a time;
+   * others leave their chunks in {@link #pending}.
+   */
+  private void drain(ByteBuffer first) {
+    long start = 0;
+    Pending next = null;
+    while (true) {
+      try {
+        if (next == null) {
+          hasher.putBytes(first);
+        } else if (next.buffers != null) {
+          for (ByteBuffer buffer : next.buffers) {
+            hasher.putBytes(buffer);
+          }
+        } else {
+          next.written.join();
+          hashSpilled(start, next.end);
+        }
+      } catch (IOException | RuntimeException e) {
+        result.completeExceptionally(e);
+        return;
+      }
+      synchronized (this) {
+        if (next != null && next.buffers != null && !closed) {
+          Collections.addAll(freeBuffers, next.buffers);
+        }
+        if (frontier == totalLength) {
+          break;
+        }
+        next = pending.remove(frontier);
+        if (next == null) {
+          draining = false;
+          return;
+        }
+        start = frontier;
+        frontier = next.end;
+      }
+    }
+    try {
+      result.complete(hasher.digest());
+    } catch (RuntimeException e) {
+      result.completeExceptionally(e);
+    }
+    closeSpill();
+  }
+
+  private void hashSpilled(long start, long end) throws IOException {
+    if (readBuffer == null) {
+      readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    }
+    for (long position = start; position < end; ) {
+      readBuffer.clear().limit((int) Math.min(readBuffer.capacity(), end - position));
+      while (readBuffer.hasRemaining()) {
+        int read = spill.read(readBuffer, position + readBuffer.position());
+        if (read < 0) {
+          throw new EOFException("Temporary file was truncated");
+        }
+      }
+      position += readBuffer.position();
+      hasher.putBytes(readBuffer.flip());
+    }
+  }
+
+  /**
+   * Releases the memory and deletes the temporary file held by this assembler. If bytes of the
+   * object are still missing, the result is cancelled.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      closed = true;
+      pending.clear();
+      freeBuffers.clear();
+    }
+    result.cancel(false);
+    closeSpill();
+  }
+
+  private synchronized void closeSpill() {
+    if (spill != null) {
+      try {
+        spill.close();
+      } catch (IOException e) {
+        // Nothing is lost; the file is only deleted late
+      }
+      spill = null;
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "OrderedHashAssembler{"
+        + "function=" + hasher.algorithm()
+        + ", totalLength=" + totalLength
+        + ", hashed=" + frontier
+        + ", pending=" + pending.size()
+        + '}';
+  }
+
+  private static final class Pending {
+    final long end;
+    /**
+     * The bytes of the chunk in pooled buffers, or null if they were written to the temporary file.
+     */
+    final ByteBuffer[] buffers;
+    /**
+     * Completes once the chunk is in the temporary file, or null if it is in {@link #buffers}.
+     */
+    final CompletableFuture<Void> written;
+
+    Pending(long end, ByteBuffer[] buffers, CompletableFuture<Void> written) {
+      this.end = end;
+      this.buffers = buffers;
+      this.written = written;
+    }
+  }
+
+  private static final class SpillWrite {
+    final FileChannel channel;
+    final long position;
+    final ByteBuffer piece;
+    final CompletableFuture<Void> written;
+
+    SpillWrite(FileChannel channel, long position, ByteBuffer piece,
+        CompletableFuture<Void> written) {
+      this.channel = channel;
+      this.position = position;
+      this.piece = piece;
+      this.written = written;
+    }
+  }
+}
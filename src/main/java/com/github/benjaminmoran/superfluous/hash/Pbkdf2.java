@@ -0,0 +1,155 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * Password-based key derivation.
+ * <p>
+ * Defined in <a href="https://www.rfc-editor.org/rfc/rfc8018#section-5.2">RFC 8018, <i>PKCS #5:
+ * Password-Based Cryptography Specification Version 2.1</i></a>, section 5.2, with HMAC-SHA-256
+ * (<a href="https://www.rfc-editor.org/rfc/rfc2104">RFC 2104</a>) as the pseudorandom function.
+ * <p>
+ * Basic usage:
+ * <pre>{@code
+ * byte[] key = Pbkdf2.hmacSha256("passwd".getBytes(), "salt".getBytes(), 1, 64);
+ * }</pre>
+ */
+public final class Pbkdf2 {
+  private static final int BLOCK_BYTES = 64;
+  private static final int DIGEST_WORDS = 8;
+  private static final int DIGEST_BYTES = Integer.BYTES * DIGEST_WORDS;
+  private static final byte IPAD = 0x36;
+  private static final byte OPAD = 0x5c;
+
+  private Pbkdf2() {
+  }
+
+  /**
+   * Derives a key from a password using PBKDF2 with HMAC-SHA-256.
+   * <p>
+   * Each 32-byte block of the derived key is independent of the others, so keys longer than one
+   * block are computed in parallel.
+   *
+   * @param password   the password (HMAC key)
+   * @param salt       the salt
+   * @param iterations the iteration count (must be positive)
+   * @param keyLength  the length of the derived key in bytes (must be positive)
+   * @return the derived key
+   */
+  public static byte[] hmacSha256(byte[] password, byte[] salt, int iterations, int keyLength) {
+    Objects.requireNonNull(password);
+    Objects.requireNonNull(salt);
+    if (iterations <= 0) {
+      throw new IllegalArgumentException("Iteration count must be positive");
+    }
+    if (keyLength <= 0) {
+      throw new IllegalArgumentException("Key length must be positive");
+    }
+
+    // The HMAC key is fixed, so the states after absorbing the padded keys are computed only once
+    byte[] key = password.length > BLOCK_BYTES
+        ? HashFunctions.sha256().hash(password).bytes()
+        : password;
+    int[] innerMidstate = padKeyMidstate(key, IPAD);
+    int[] outerMidstate = padKeyMidstate(key, OPAD);
+
+    int blockCount = (keyLength + DIGEST_BYTES - 1) / DIGEST_BYTES;
+    byte[] derivedKey = new byte[keyLength];
+    IntStream blocks = IntStream.rangeClosed(1, blockCount);
+    if (blockCount > 1) {
+      blocks = blocks.parallel();
+    }
+    blocks.forEach(blockIndex -> {
+      int[] block = computeBlock(innerMidstate, outerMidstate, salt, iterations, blockIndex);
+      int offset = (blockIndex - 1) * DIGEST_BYTES;
+      ByteBuffer out = ByteBuffer.allocate(DIGEST_BYTES);
+      for (int word : block) {
+        out.putInt(word);
+      }
+      System.arraycopy(out.array(), 0, derivedKey, offset,
+          Math.min(DIGEST_BYTES, keyLength - offset));
+    });
+    return derivedKey;
+  }
+
+  private static int[] padKeyMidstate(byte[] key, byte pad) {
+    ByteBuffer block = ByteBuffer.allocate(BLOCK_BYTES);
+    for (int i = 0; i < BLOCK_BYTES; i++) {
+      block.put((byte) ((i < key.length ? key[i] : 0) ^ pad));
+    }
+    int[] state = Sha256Hasher.initialState();
+    int[] schedule = new int[64];
+    block.rewind();
+    for (int t = 0; t < BLOCK_BYTES / Integer.BYTES; t++) {
+      schedule[t] = block.getInt();
+    }
+    Sha256Hasher.compress(state, schedule);
+    return state;
+  }
+
+  /**
+   * Computes {@code F(P, S, c, i)}, the XOR of the HMAC chain {@code U_1 ... U_c}.
+   */
+  private static int[] computeBlock(
+      int[] innerMidstate, int[] outerMidstate, byte[] salt, int iterations, int blockIndex) {
+    int[] schedule = new int[64];
+    int[] u = new int[DIGEST_WORDS];
+
+    // U_1 = HMAC(P, S || INT(i)) has a variable-length message, so it takes the general route
+    ByteBuffer message = ByteBuffer.allocate(salt.length + Integer.BYTES);
+    message.put(salt).putInt(blockIndex);
+    System.arraycopy(innerMidstate, 0, u, 0, DIGEST_WORDS);
+    absorbFinal(u, message.array(), schedule);
+    int[] inner = u.clone();
+    System.arraycopy(outerMidstate, 0, u, 0, DIGEST_WORDS);
+    absorbDigest(u, inner, schedule);
+
+    int[] result = u.clone();
+    for (int iteration = 1; iteration < iterations; iteration++) {
+      // U_j = HMAC(P, U_{j-1}): both hashes are exactly one padded block after the midstate
+      System.arraycopy(u, 0, inner, 0, DIGEST_WORDS);
+      System.arraycopy(innerMidstate, 0, u, 0, DIGEST_WORDS);
+      absorbDigest(u, inner, schedule);
+      System.arraycopy(u, 0, inner, 0, DIGEST_WORDS);
+      System.arraycopy(outerMidstate, 0, u, 0, DIGEST_WORDS);
+      absorbDigest(u, inner, schedule);
+      for (int i = 0; i < DIGEST_WORDS; i++) {
+        result[i] ^= u[i];
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Finishes a hash whose first block was the padded key, given a 32-byte final message.
+   */
+  private static void absorbDigest(int[] state, int[] digest, int[] schedule) {
+    System.arraycopy(digest, 0, schedule, 0, DIGEST_WORDS);
+    schedule[8] = 0x80000000;
+    for (int t = 9; t < 15; t++) {
+      schedule[t] = 0;
+    }
+    schedule[15] = Byte.SIZE * (BLOCK_BYTES + DIGEST_BYTES);
+    Sha256Hasher.compress(state, schedule);
+  }
+
+  /**
+   * Finishes a hash whose first block was the padded key, given a final message of any length.
+   */
+  private static void absorbFinal(int[] state, byte[] message, int[] schedule) {
+    int paddedLength = (message.length + 1 + Long.BYTES + BLOCK_BYTES - 1)
+        / BLOCK_BYTES * BLOCK_BYTES;
+    ByteBuffer padded = ByteBuffer.allocate(paddedLength);
+    padded.put(message).put((byte) 0x80);
+    padded.putLong(paddedLength - Long.BYTES, Byte.SIZE * ((long) BLOCK_BYTES + message.length));
+    padded.rewind();
+    while (padded.hasRemaining()) {
+      for (int t = 0; t < BLOCK_BYTES / Integer.BYTES; t++) {
+        schedule[t] = padded.getInt();
+      }
+      Sha256Hasher.compress(state, schedule);
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Instances of this class can be obtained from {@link ShardRouter#rendezvous(HashFunction, Map)}.
+ */
+class RendezvousShardRouter<S> extends AbstractShardRouter<S> {
+  private final long[] seeds;
+  private final double[] weights;
+
+  RendezvousShardRouter(HashFunction function, Map<S, Double> weights) {
+    super(function, List.copyOf(weights.keySet()));
+    this.seeds = new long[shards.size()];
+    this.weights = new double[shards.size()];
+    for (int i = 0; i < shards.size(); i++) {
+      S shard = shards.get(i);
+      double weight = weights.get(shard);
+      if (!(weight > 0.0 && weight < Double.POSITIVE_INFINITY)) {
+        throw new IllegalArgumentException("Weight must be positive and finite: " + shard);
+      }
+      this.seeds[i] = hashShardName(shard, 0);
+      this.weights[i] = weight;
+    }
+  }
+
+  @Override
+  protected S routeHash(long hash) {
+    int best = 0;
+    double bestScore = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < seeds.length; i++) {
+      // A uniform value in (0, 1), so that -weight / ln(u) is exponentially distributed
+      double u = ((Operations.mix64(hash ^ seeds[i]) >>> 11) + 0.5) * 0x1.0p-53;
+      double score = -weights[i] / Math.log(u);
+      if (score > bestScore) {
+        bestScore = score;
+        best = i;
+      }
+    }
+    return shards.get(best);
+  }
+
+  @Override
+  public String toString() {
+    return "RendezvousShardRouter{"
+        + "function=" + function
+        + ", shards=" + shards
+        + '}';
+  }
+}
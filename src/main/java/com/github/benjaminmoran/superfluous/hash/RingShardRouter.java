@@ -0,0 +1,70 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Instances of this class can be obtained from
+ * {@link ShardRouter#ring(HashFunction, List, int)}.
+ */
+class RingShardRouter<S> extends AbstractShardRouter<S> {
+  /**
+   * The positions of the virtual nodes on the ring, in ascending order.
+   */
+  private final long[] points;
+  /**
+   * The index in {@code shards} of the owner of each point.
+   */
+  private final int[] owners;
+
+  RingShardRouter(HashFunction function, List<S> shards, int virtualNodes) {
+    super(function, shards);
+    if (virtualNodes <= 0) {
+      throw new IllegalArgumentException("Number of virtual nodes must be positive");
+    }
+    int pointCount = Math.multiplyExact(this.shards.size(), virtualNodes);
+
+    // Sort (position, owner) pairs together, ordering ties by owner so the ring is deterministic
+    long[] positions = new long[pointCount];
+    Integer[] order = new Integer[pointCount];
+    for (int shard = 0; shard < this.shards.size(); shard++) {
+      for (int node = 0; node < virtualNodes; node++) {
+        int point = shard * virtualNodes + node;
+        positions[point] = hashShardName(this.shards.get(shard), node);
+        order[point] = point;
+      }
+    }
+    Arrays.sort(order, (a, b) -> positions[a] != positions[b]
+        ? Long.compare(positions[a], positions[b])
+        : Integer.compare(a, b));
+
+    points = new long[pointCount];
+    owners = new int[pointCount];
+    for (int i = 0; i < pointCount; i++) {
+      points[i] = positions[order[i]];
+      owners[i] = order[i] / virtualNodes;
+    }
+  }
+
+  @Override
+  protected S routeHash(long hash) {
+    // The owner is the first point at or after the hash, wrapping around the end of the ring
+    int index = Arrays.binarySearch(points, hash);
+    if (index < 0) {
+      index = -index - 1;
+      if (index == points.length) {
+        index = 0;
+      }
+    }
+    return shards.get(owners[index]);
+  }
+
+  @Override
+  public String toString() {
+    return "RingShardRouter{"
+        + "function=" + function
+        + ", shards=" + shards
+        + ", points=" + points.length
+        + '}';
+  }
+}
@@ -0,0 +1,49 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The weak checksum of rsync, over a window which can be moved forward one byte at a time in
+ * constant time.
+ * <p>
+ * For a window {@code x[0..n)}, the checksum combines {@code a = sum(x[i])} and
+ * {@code b = sum((n - i) x[i])}, each modulo 2<sup>16</sup>. Defined in <a
+ * href="https://rsync.samba.org/tech_report/node3.html"><i>The rsync algorithm</i></a> by Andrew
+ * Tridgell and Paul Mackerras, 1996.
+ */
+final class RollingChecksum {
+  private final int windowSize;
+  private int a;
+  private int b;
+
+  RollingChecksum(int windowSize) {
+    this.windowSize = windowSize;
+  }
+
+  /**
+   * Sets the window to {@code windowSize} bytes of a buffer, without changing its position.
+   */
+  void reset(ByteBuffer buffer, int index) {
+    a = 0;
+    b = 0;
+    for (int i = index; i < index + windowSize; i++) {
+      a += buffer.get(i) & 0xff;
+      b += a;
+    }
+  }
+
+  /**
+   * Moves the window forward by one byte.
+   *
+   * @param out the first byte of the current window
+   * @param in  the byte following the current window
+   */
+  void roll(byte out, byte in) {
+    a += (in & 0xff) - (out & 0xff);
+    b += a - windowSize * (out & 0xff);
+  }
+
+  int value() {
+    return (a & 0xffff) | (b << 16);
+  }
+}
@@ -39,13 +39,11 @@ class Sha256Hasher extends AbstractBlockHasher {
 
   private final int[] state;
   private final int[] scheduleBuf;
-  private final int[] deltaBuf;
 
   private Sha256Hasher() {
     super(BYTES_PER_BLOCK);
     state = INITIAL_STATE.clone();
     scheduleBuf = new int[K.length];
-    deltaBuf = new int[state.length];
   }
 
   @Override
@@ -55,50 +53,67 @@ class Sha256Hasher extends AbstractBlockHasher {
 
   @Override
   protected void processBlock(ByteBuffer block) {
-    int[] schedule = buildSchedule(block);
-    int[] delta = computeDelta(schedule);
-
-    for (int i = 0; i < state.length; i++) {
-      state[i] += delta[i];
-    }
-  }
-
-  private int[] buildSchedule(ByteBuffer block) {
     block.rewind();
     for (int t = 0; t < WORDS_PER_BLOCK; t++) {
       scheduleBuf[t] = block.getInt();
     }
-    for (int t = WORDS_PER_BLOCK; t < scheduleBuf.length; t++) {
-      scheduleBuf[t] =
-          s1(scheduleBuf[t - 2])
-              + scheduleBuf[t - 7]
-              + s0(scheduleBuf[t - 15])
-              + scheduleBuf[t - 16];
-    }
-    return scheduleBuf;
+    compress(state, scheduleBuf);
+  }
+
+  /**
+   * {@return a new copy of the state before any message blocks have been processed}
+   */
+  static int[] initialState() {
+    return INITIAL_STATE.clone();
   }
 
-  private int[] computeDelta(int[] schedule) {
-    // Initialize deltaBuf by copying in state
-    System.arraycopy(state, 0, deltaBuf, 0, state.length);
-
-    for (int t = 0; t < schedule.length; t++) {
-      int t1 = schedule[t] + K[t]
-          + deltaBuf[7]
-          + S1(deltaBuf[4])
-          + choose(deltaBuf[4], deltaBuf[5], deltaBuf[6]);
-      int t2 = S0(deltaBuf[0]) + majority(deltaBuf[0], deltaBuf[1], deltaBuf[2]);
-
-      deltaBuf[7] = deltaBuf[6];
-      deltaBuf[6] = deltaBuf[5];
-      deltaBuf[5] = deltaBuf[4];
-      deltaBuf[4] = deltaBuf[3] + t1;
-      deltaBuf[3] = deltaBuf[2];
-      deltaBuf[2] = deltaBuf[1];
-      deltaBuf[1] = deltaBuf[0];
-      deltaBuf[0] = t1 + t2;
+  /**
+   * Applies the SHA-256 compression function to {@code state}, in place.
+   * <p>
+   * The first 16 words of {@code schedule} must contain the message block; the array must have
+   * length 64, and the remaining words are overwritten with the expanded message schedule.
+   *
+   * @param state    the 8-word intermediate hash value to update
+   * @param schedule the message block, followed by space for the rest of the schedule
+   */
+  static void compress(int[] state, int[] schedule) {
+    for (int t = WORDS_PER_BLOCK; t < K.length; t++) {
+      schedule[t] =
+          s1(schedule[t - 2])
+              + schedule[t - 7]
+              + s0(schedule[t - 15])
+              + schedule[t - 16];
     }
-    return deltaBuf;
+
+    int a = state[0];
+    int b = state[1];
+    int c = state[2];
+    int d = state[3];
+    int e = state[4];
+    int f = state[5];
+    int g = state[6];
+    int h = state[7];
+    for (int t = 0; t < K.length; t++) {
+      int t1 = schedule[t] + K[t] + h + S1(e) + choose(e, f, g);
+      int t2 = S0(a) + majority(a, b, c);
+      h = g;
+      g = f;
+      f = e;
+      e = d + t1;
+      d = c;
+      c = b;
+      b = a;
+      a = t1 + t2;
+    }
+
+    state[0] += a;
+    state[1] += b;
+    state[2] += c;
+    state[3] += d;
+    state[4] += e;
+    state[5] += f;
+    state[6] += g;
+    state[7] += h;
   }
 
   @Override
@@ -0,0 +1,113 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A consistent mapping from keys to a set of shards.
+ * <p>
+ * Keys are byte arrays, hashed once with a {@link HashFunction}, or {@code long}s, which are
+ * scrambled with a cheap non-cryptographic mixer instead. The two kinds of key are routed
+ * independently: {@code route(new byte[] {1})} and {@code route(1L)} need not agree.
+ * <p>
+ * Routers are immutable. When the set of shards changes, create a new router; the algorithms differ
+ * in how many keys then move to a different shard:
+ * <ul>
+ *   <li>{@link #jump(HashFunction, List) Jump consistent hashing} needs no memory and moves the
+ *   minimum number of keys, but shards can only be added or removed at the end of the list.</li>
+ *   <li>{@link #rendezvous(HashFunction, Map) Rendezvous hashing} allows any shard to be added or
+ *   removed, and supports weights, but a lookup takes time proportional to the number of shards.
+ *   </li>
+ *   <li>{@link #ring(HashFunction, List, int) Ring hashing} allows any shard to be added or removed,
+ *   with a lookup in logarithmic time, at the cost of memory for the virtual nodes.</li>
+ * </ul>
+ * Rendezvous and ring hashing identify each shard by the UTF-8 encoding of its
+ * {@link Object#toString() toString()}, which must therefore be distinct and stable.
+ *
+ * @param <S> the type of the shards
+ */
+public interface ShardRouter<S> {
+  /**
+   * Creates a router using jump consistent hashing.
+   * <p>
+   * Defined in <a href="https://arxiv.org/abs/1406.2294">A Fast, Minimal Memory, Consistent Hash
+   * Algorithm</a> by Lamping and Veach, 2014.
+   *
+   * @param function hashes byte array keys (digests must be at least 8 bytes long)
+   * @param shards   the shards, in an order which only changes at the end
+   * @param <S>      the type of the shards
+   * @return a router over {@code shards}
+   */
+  static <S> ShardRouter<S> jump(HashFunction function, List<S> shards) {
+    return new JumpShardRouter<>(function, shards);
+  }
+
+  /**
+   * Creates a router using weighted rendezvous (highest random weight) hashing.
+   * <p>
+   * Each shard receives a fraction of the keys proportional to its weight. Defined in <a
+   * href="https://doi.org/10.1109/90.663936">Using Name-Based Mappings to Increase Hit Rates</a>
+   * by Thaler and Ravishankar, 1998, with the logarithmic weighting of Schindelhauer and Schomaker,
+   * 2005.
+   *
+   * @param function hashes byte array keys and shard names (digests must be at least 8 bytes long)
+   * @param weights  the shards and their weights (which must be positive and finite)
+   * @param <S>      the type of the shards
+   * @return a router over the keys of {@code weights}
+   */
+  static <S> ShardRouter<S> rendezvous(HashFunction function, Map<S, Double> weights) {
+    return new RendezvousShardRouter<>(function, weights);
+  }
+
+  /**
+   * Creates a router using a consistent hash ring with virtual nodes.
+   * <p>
+   * Defined in <a href="https://doi.org/10.1145/258533.258660">Consistent Hashing and Random
+   * Trees</a> by Karger et al., 1997.
+   *
+   * @param function     hashes byte array keys and virtual nodes (digests must be at least 8 bytes
+   *                     long)
+   * @param shards       the shards
+   * @param virtualNodes the number of points each shard occupies on the ring (must be positive)
+   * @param <S>          the type of the shards
+   * @return a router over {@code shards}
+   */
+  static <S> ShardRouter<S> ring(HashFunction function, List<S> shards, int virtualNodes) {
+    return new RingShardRouter<>(function, shards, virtualNodes);
+  }
+
+  /**
+   * {@return the shards which keys are routed to}
+   */
+  List<S> shards();
+
+  /**
+   * Finds the shard for a byte array key.
+   *
+   * @param key the key to route
+   * @return the shard which owns {@code key}
+   */
+  S route(byte[] key);
+
+  /**
+   * Finds the shard for a {@code long} key, without hashing it with the router's hash function.
+   *
+   * @param key the key to route
+   * @return the shard which owns {@code key}
+   */
+  S route(long key);
+
+  /**
+   * Returns a router which remembers the shards of recently routed byte array keys, to avoid
+   * hashing them again.
+   * <p>
+   * The cache is direct-mapped: each key can occupy only one entry, which is overwritten by the next
+   * key competing for it. {@code long} keys are not cached, since routing them is already cheap.
+   *
+   * @param maxEntries the maximum number of entries in the cache (must be positive)
+   * @return a router which agrees with this one and caches its results
+   */
+  default ShardRouter<S> cached(int maxEntries) {
+    return new CachingShardRouter<>(this, maxEntries);
+  }
+}
@@ -0,0 +1,215 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+/**
+ * SipHash, a keyed pseudorandom function for short inputs.
+ * <p>
+ * Without the key, an attacker cannot predict or choose inputs which collide, so SipHash is suited
+ * to hash tables whose keys come from untrusted sources. It is much faster than a cryptographic
+ * hash function on short inputs, but its 64-bit output is too short for a message authentication
+ * code or a content address.
+ * <p>
+ * The digest of a message is the 64-bit result in little-endian byte order, as in the reference
+ * implementation. The {@code hashToLong} and {@link #hashLong(long)} methods return the result
+ * directly, without creating a {@link Hasher} or a {@link Digest}; they allocate nothing.
+ * <p>
+ * Instances can be obtained from {@link HashFunctions#sipHash13(byte[])} and
+ * {@link HashFunctions#sipHash24(byte[])}.
+ */
+public final class SipHashFunction implements HashFunction {
+  /**
+   * The length of a key in bytes.
+   */
+  public static final int KEY_LENGTH = 16;
+
+  private static final VarHandle LONGS =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+  /**
+   * "somepseudorandomlygeneratedbytes", which the key is added to.
+   */
+  static final long INIT0 = 0x736f6d6570736575L;
+  static final long INIT1 = 0x646f72616e646f6dL;
+  static final long INIT2 = 0x6c7967656e657261L;
+  static final long INIT3 = 0x7465646279746573L;
+
+  final int compressionRounds;
+  final int finalizationRounds;
+  final long k0;
+  final long k1;
+
+  SipHashFunction(int compressionRounds, int finalizationRounds, long k0, long k1) {
+    this.compressionRounds = compressionRounds;
+    this.finalizationRounds = finalizationRounds;
+    this.k0 = k0;
+    this.k1 = k1;
+  }
+
+  static SipHashFunction of(int compressionRounds, int finalizationRounds, byte[] key) {
+    Objects.requireNonNull(key);
+    if (key.length != KEY_LENGTH) {
+      throw new IllegalArgumentException("Key length must be " + KEY_LENGTH);
+    }
+    return new SipHashFunction(compressionRounds, finalizationRounds,
+        (long) LONGS.get(key, 0), (long) LONGS.get(key, Long.BYTES));
+  }
+
+  @Override
+  public String name() {
+    return "SipHash-" + compressionRounds + "-" + finalizationRounds;
+  }
+
+  @Override
+  public int digestLength() {
+    return Long.BYTES;
+  }
+
+  @Override
+  public Hasher init() {
+    return new SipHasher(this);
+  }
+
+  /**
+   * Computes the hash of a byte array as a {@code long}, without creating a {@link Digest}.
+   *
+   * @param input the bytes of the message
+   * @return the 64-bit hash of the message
+   */
+  public long hashToLong(byte[] input) {
+    return hashToLong(Objects.requireNonNull(input), 0, input.length);
+  }
+
+  /**
+   * Computes the hash of a sub-array of the input as a {@code long}, without creating a
+   * {@link Digest}.
+   *
+   * @param input  the byte array containing the message
+   * @param offset the offset of the message in {@code input}
+   * @param length the number of bytes in the message
+   * @return the 64-bit hash of the message
+   */
+  public long hashToLong(byte[] input, int offset, int length) {
+    Objects.requireNonNull(input);
+    Objects.checkFromIndexSize(offset, length, input.length);
+    long v0 = k0 ^ INIT0;
+    long v1 = k1 ^ INIT1;
+    long v2 = k0 ^ INIT2;
+    long v3 = k1 ^ INIT3;
+    int end = offset + length;
+    int wordsEnd = end - (length & (Long.BYTES - 1));
+    for (int i = offset; i < wordsEnd; i += Long.BYTES) {
+      long m = (long) LONGS.get(input, i);
+      v3 ^= m;
+      for (int r = 0; r < compressionRounds; r++) {
+        v0 += v1;
+        v1 = Long.rotateLeft(v1, 13);
+        v1 ^= v0;
+        v0 = Long.rotateLeft(v0, 32);
+        v2 += v3;
+        v3 = Long.rotateLeft(v3, 16);
+        v3 ^= v2;
+        v0 += v3;
+        v3 = Long.rotateLeft(v3, 21);
+        v3 ^= v0;
+        v2 += v1;
+        v1 = Long.rotateLeft(v1, 17);
+        v1 ^= v2;
+        v2 = Long.rotateLeft(v2, 32);
+      }
+      v0 ^= m;
+    }
+    long last = (long) length << (Long.SIZE - Byte.SIZE);
+    for (int i = end - 1; i >= wordsEnd; i--) {
+      last |= (input[i] & 0xffL) << (Byte.SIZE * (i - wordsEnd));
+    }
+    return finish(v0, v1, v2, v3, last);
+  }
+
+  /**
+   * Computes the hash of a {@code long} encoded as 8 big-endian bytes, without creating a
+   * {@link Digest}.
+   * <p>
+   * Equivalent to {@code hashToLong(bytes)}, where {@code bytes} is the encoding written by
+   * {@link Hasher#putLong(long)}.
+   *
+   * @param input the value to hash
+   * @return the 64-bit hash of the value
+   */
+  public long hashLong(long input) {
+    long v0 = k0 ^ INIT0;
+    long v1 = k1 ^ INIT1;
+    long v2 = k0 ^ INIT2;
+    long v3 = k1 ^ INIT3;
+    long m = Long.reverseBytes(input);
+    v3 ^= m;
+    for (int r = 0; r < compressionRounds; r++) {
+      v0 += v1;
+      v1 = Long.rotateLeft(v1, 13);
+      v1 ^= v0;
+      v0 = Long.rotateLeft(v0, 32);
+      v2 += v3;
+      v3 = Long.rotateLeft(v3, 16);
+      v3 ^= v2;
+      v0 += v3;
+      v3 = Long.rotateLeft(v3, 21);
+      v3 ^= v0;
+      v2 += v1;
+      v1 = Long.rotateLeft(v1, 17);
+      v1 ^= v2;
+      v2 = Long.rotateLeft(v2, 32);
+    }
+    v0 ^= m;
+    return finish(v0, v1, v2, v3, (long) Long.BYTES << (Long.SIZE - Byte.SIZE));
+  }
+
+  /**
+   * Absorbs the final word of a message into a state held by the caller, and returns the hash.
+   * Shared by the one-shot methods, which keep the state in local variables.
+   */
+  private long finish(long v0, long v1, long v2, long v3, long last) {
+    v3 ^= last;
+    for (int r = 0; r < compressionRounds; r++) {
+      v0 += v1;
+      v1 = Long.rotateLeft(v1, 13);
+      v1 ^= v0;
+      v0 = Long.rotateLeft(v0, 32);
+      v2 += v3;
+      v3 = Long.rotateLeft(v3, 16);
+      v3 ^= v2;
+      v0 += v3;
+      v3 = Long.rotateLeft(v3, 21);
+      v3 ^= v0;
+      v2 += v1;
+      v1 = Long.rotateLeft(v1, 17);
+      v1 ^= v2;
+      v2 = Long.rotateLeft(v2, 32);
+    }
+    v0 ^= last;
+    v2 ^= 0xff;
+    for (int r = 0; r < finalizationRounds; r++) {
+      v0 += v1;
+      v1 = Long.rotateLeft(v1, 13);
+      v1 ^= v0;
+      v0 = Long.rotateLeft(v0, 32);
+      v2 += v3;
+      v3 = Long.rotateLeft(v3, 16);
+      v3 ^= v2;
+      v0 += v3;
+      v3 = Long.rotateLeft(v3, 21);
+      v3 ^= v0;
+      v2 += v1;
+      v1 = Long.rotateLeft(v1, 17);
+      v1 ^= v2;
+      v2 = Long.rotateLeft(v2, 32);
+    }
+    return v0 ^ v1 ^ v2 ^ v3;
+  }
+
+  @Override
+  public String toString() {
+    return name();
+  }
+}
@@ -0,0 +1,142 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+/**
+ * Instances of this class can be obtained from {@link SipHashFunction#init()}.
+ * <p>
+ * Defined in <a href="https://www.aumasson.jp/siphash/siphash.pdf"><i>SipHash: a fast short-input
+ * PRF</i></a> by Jean-Philippe Aumasson and Daniel J. Bernstein, 2012.
+ */
+final class SipHasher extends AbstractHasher {
+  private static final VarHandle LONGS =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+  private final SipHashFunction function;
+  private long v0;
+  private long v1;
+  private long v2;
+  private long v3;
+  /**
+   * The bytes received since the last complete word, in little-endian order.
+   */
+  private long tail;
+  private long length;
+
+  SipHasher(SipHashFunction function) {
+    this.function = function;
+    v0 = function.k0 ^ SipHashFunction.INIT0;
+    v1 = function.k1 ^ SipHashFunction.INIT1;
+    v2 = function.k0 ^ SipHashFunction.INIT2;
+    v3 = function.k1 ^ SipHashFunction.INIT3;
+  }
+
+  @Override
+  public HashFunction algorithm() {
+    return function;
+  }
+
+  @Override
+  public Hasher update(byte[] input, int offset, int length) {
+    Objects.requireNonNull(input);
+    Objects.checkFromIndexSize(offset, length, input.length);
+    int i = offset;
+    int end = offset + length;
+    while (i < end && (this.length & (Long.BYTES - 1)) != 0) {
+      putByte(input[i++]);
+    }
+    for (; end - i >= Long.BYTES; i += Long.BYTES) {
+      compress((long) LONGS.get(input, i));
+      this.length += Long.BYTES;
+    }
+    while (i < end) {
+      putByte(input[i++]);
+    }
+    return this;
+  }
+
+  @Override
+  public Hasher putByte(byte input) {
+    int shift = Byte.SIZE * (int) (length & (Long.BYTES - 1));
+    tail |= (input & 0xffL) << shift;
+    length++;
+    if ((length & (Long.BYTES - 1)) == 0) {
+      compress(tail);
+      tail = 0;
+    }
+    return this;
+  }
+
+  @Override
+  public Hasher putLong(long input) {
+    long word = Long.reverseBytes(input);
+    int shift = Byte.SIZE * (int) (length & (Long.BYTES - 1));
+    if (shift == 0) {
+      compress(word);
+    } else {
+      compress(tail | (word << shift));
+      tail = word >>> (Long.SIZE - shift);
+    }
+    length += Long.BYTES;
+    return this;
+  }
+
+  /**
+   * Absorbs one 64-bit word of the message.
+   */
+  private void compress(long m) {
+    v3 ^= m;
+    for (int i = 0; i < function.compressionRounds; i++) {
+      sipRound();
+    }
+    v0 ^= m;
+  }
+
+  /**
+   * Absorbs the final word, which holds the trailing bytes and the length, and returns the hash.
+   */
+  private long finish() {
+    compress(tail | (length << (Long.SIZE - Byte.SIZE)));
+    v2 ^= 0xff;
+    for (int i = 0; i < function.finalizationRounds; i++) {
+      sipRound();
+    }
+    return v0 ^ v1 ^ v2 ^ v3;
+  }
+
+  private void sipRound() {
+    v0 += v1;
+    v1 = Long.rotateLeft(v1, 13);
+    v1 ^= v0;
+    v0 = Long.rotateLeft(v0, 32);
+    v2 += v3;
+    v3 = Long.rotateLeft(v3, 16);
+    v3 ^= v2;
+    v0 += v3;
+    v3 = Long.rotateLeft(v3, 21);
+    v3 ^= v0;
+    v2 += v1;
+    v1 = Long.rotateLeft(v1, 17);
+    v1 ^= v2;
+    v2 = Long.rotateLeft(v2, 32);
+  }
+
+  @Override
+  protected byte[] digestBytes() {
+    long value = finish();
+    byte[] bytes = new byte[Long.BYTES];
+    LONGS.set(bytes, 0, value);
+    return bytes;
+  }
+
+  @Override
+  public String toString() {
+    return "SipHasher{"
+        + "function=" + function
+        + ", length=" + length
+        + '}';
+  }
+}
@@ -0,0 +1,122 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import static com.github.benjaminmoran.superfluous.hash.TestData.randomBytes;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.EOFException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AsyncFileHasherTest {
+  private static final int BUFFER_SIZE = 4096;
+
+  @TempDir
+  Path tempDir;
+
+  private Path writeFile(String name, int length) throws Exception {
+    return Files.write(tempDir.resolve(name), randomBytes(length));
+  }
+
+  @Test
+  void testMatchesSynchronousHash() throws Exception {
+    var function = HashFunctions.sha256();
+    int[] lengths = {0, 1, BUFFER_SIZE - 1, BUFFER_SIZE, BUFFER_SIZE + 1, 10 * BUFFER_SIZE + 7};
+    for (int readAhead : new int[] {1, 4}) {
+      var fileHasher = AsyncFileHasher.of(function, BUFFER_SIZE, readAhead);
+      for (int length : lengths) {
+        var file = writeFile("file-" + length, length);
+
+        var digest = fileHasher.hash(file).get();
+
+        assertEquals(function.hash(Files.readAllBytes(file)), digest);
+      }
+    }
+  }
+
+  @Test
+  void testConcurrentFiles() throws Exception {
+    var function = HashFunctions.sha256();
+    var fileHasher = AsyncFileHasher.of(function, BUFFER_SIZE, 3);
+    var files = new Path[8];
+    for (int i = 0; i < files.length; i++) {
+      files[i] = writeFile("file-" + i, 50000 + i);
+    }
+
+    var futures = IntStream.range(0, files.length)
+        .mapToObj(i -> fileHasher.hash(files[i]))
+        .toArray(CompletableFuture[]::new);
+
+    for (int i = 0; i < files.length; i++) {
+      assertEquals(function.hash(Files.readAllBytes(files[i])), futures[i].get());
+    }
+  }
+
+  @Test
+  void testExecutor() throws Exception {
+    var function = HashFunctions.sha256();
+    var file = writeFile("file", 100000);
+    var executor = Executors.newFixedThreadPool(2);
+    try {
+      var digest = AsyncFileHasher.of(function, BUFFER_SIZE, 4).hash(file, executor).get();
+
+      assertEquals(function.hash(Files.readAllBytes(file)), digest);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void testFileShrinksWhileHashing() throws Exception {
+    var file = writeFile("file", 16 * BUFFER_SIZE);
+    var executor = Executors.newSingleThreadExecutor();
+    var truncated = new CountDownLatch(1);
+    try {
+      // Reads run in the executor, so none can start until the file has been truncated
+      executor.execute(() -> {
+        try {
+          truncated.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      var future = AsyncFileHasher.of(HashFunctions.sha256(), BUFFER_SIZE, 4).hash(file, executor);
+      try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+        channel.truncate(BUFFER_SIZE + 1);
+      }
+      truncated.countDown();
+
+      var exception = assertThrows(ExecutionException.class, future::get);
+      assertInstanceOf(EOFException.class, exception.getCause());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void testMissingFile() {
+    var fileHasher = AsyncFileHasher.of(HashFunctions.sha256(), BUFFER_SIZE, 4);
+
+    var future = fileHasher.hash(tempDir.resolve("missing"));
+
+    var exception = assertThrows(ExecutionException.class, future::get);
+    assertInstanceOf(NoSuchFileException.class, exception.getCause());
+  }
+
+  @Test
+  void testInvalidArguments() {
+    var function = HashFunctions.sha256();
+
+    assertThrows(IllegalArgumentException.class, () -> AsyncFileHasher.of(function, 0, 1));
+    assertThrows(IllegalArgumentException.class, () -> AsyncFileHasher.of(function, 1, 0));
+  }
+}
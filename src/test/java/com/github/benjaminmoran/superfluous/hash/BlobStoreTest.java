@@ -0,0 +1,329 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import static com.github.benjaminmoran.superfluous.hash.TestData.randomBytes;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BlobStoreTest {
+  @TempDir
+  Path tempDir;
+
+  private static byte[] blob(int i) {
+    var bytes = new byte[i % 500];
+    new Random(i).nextBytes(bytes);
+    return ByteBuffer.allocate(bytes.length + 4).putInt(i).put(bytes).array();
+  }
+
+  private long packCount() throws IOException {
+    try (var files = Files.list(tempDir)) {
+      return files.filter(file -> file.getFileName().toString().endsWith(".pack")).count();
+    }
+  }
+
+  @Test
+  void testPutAndGet() throws Exception {
+    try (var store = BlobStore.open(tempDir, HashFunctions.sha256())) {
+      var blob = "Hello, world!".getBytes();
+
+      var digest = store.put(blob);
+
+      assertEquals(HashFunctions.sha256().hash(blob), digest);
+      assertTrue(store.contains(digest));
+      assertArrayEquals(blob, store.get(digest).orElseThrow());
+      assertEquals(1, store.size());
+    }
+  }
+
+  @Test
+  void testGetMissing() throws Exception {
+    try (var store = BlobStore.open(tempDir, HashFunctions.sha256())) {
+      var digest = HashFunctions.sha256().hash(new byte[1]);
+
+      assertEquals(Optional.empty(), store.get(digest));
+      assertFalse(store.contains(digest));
+    }
+  }
+
+  @Test
+  void testPutDeduplicates() throws Exception {
+    try (var store = BlobStore.open(tempDir, HashFunctions.sha256())) {
+      var digest = store.put(blob(1));
+      var streamed = store.put(new ByteArrayInputStream(blob(1)));
+
+      assertEquals(digest, streamed);
+      assertEquals(1, store.size());
+      assertArrayEquals(blob(1), store.get(digest).orElseThrow());
+    }
+  }
+
+  @Test
+  void testPutStream() throws Exception {
+    try (var store = BlobStore.open(tempDir, HashFunctions.sha256())) {
+      var blob = randomBytes(200_000, 1);
+
+      var digest = store.put(new ByteArrayInputStream(blob));
+
+      assertEquals(HashFunctions.sha256().hash(blob), digest);
+      assertArrayEquals(blob, store.get(digest).orElseThrow());
+    }
+  }
+
+  @Test
+  void testPutStreamRespectsMaxPackSize() throws Exception {
+    long maxPackSize = 300_000;
+    try (var store = BlobStore.open(tempDir, HashFunctions.sha256(), maxPackSize)) {
+      var random = new Random(2);
+      for (int i = 0; i < 20; i++) {
+        var blob = new byte[i % 2 == 0 ? 100 : 200_000];
+        random.nextBytes(blob);
+
+        var digest = store.put(new ByteArrayInputStream(blob));
+
+        assertArrayEquals(blob, store.get(digest).orElseThrow());
+      }
+    }
+    try (var files = Files.list(tempDir)) {
+      for (var pack : files.filter(file -> file.toString().endsWith(".pack")).toList()) {
+        assertTrue(Files.size(pack) <= maxPackSize, pack + " is too large");
+      }
+    }
+  }
+
+  @Test
+  void testEmptyBlob() throws Exception {
+    try (var store = BlobStore.open(tempDir, HashFunctions.sha256())) {
+      var digest = store.put(new byte[0]);
+
+      assertArrayEquals(new byte[0], store.get(digest).orElseThrow());
+    }
+  }
+
+  @Test
+  void testDelete() throws Exception {
+    try (var store = BlobStore.open(tempDir, HashFunctions.sha256())) {
+      var digest = store.put(blob(1));
+
+      assertTrue(store.delete(digest));
+
+      assertFalse(store.contains(digest));
+      assertFalse(store.delete(digest));
+      assertEquals(0, store.size());
+      // The blob can be stored again after deletion
+      store.put(blob(1));
+      assertTrue(store.contains(digest));
+    }
+  }
+
+  @Test
+  void testManyBlobsAndReopen() throws Exception {
+    var digests = new Digest[20000];
+    try (var store = BlobStore.open(tempDir, HashFunctions.sha256())) {
+      for (int i = 0; i < digests.length; i++) {
+        digests[i] = store.put(blob(i));
+      }
+    }
+
+    try (var store = BlobStore.open(tempDir, HashFunctions.sha256())) {
+      assertEquals(digests.length, store.size());
+      for (int i = 0; i < digests.length; i++) {
+        assertArrayEquals(blob(i), store.get(digests[i]).orElseThrow());
+      }
+    }
+  }
+
+  @Test
+  void testConcurrentPut() throws Exception {
+    try (var store = BlobStore.open(tempDir, HashFunctions.sha256())) {
+      var digests = IntStream.range(0, 2000).parallel()
+          .mapToObj(i -> {
+            try {
+              return store.put(blob(i % 1000));
+            } catch (IOException e) {
+              throw new RuntimeException(e);
+            }
+          })
+          .collect(Collectors.toSet());
+
+      assertEquals(1000, digests.size());
+      assertEquals(1000, store.size());
+      for (int i = 0; i < 1000; i++) {
+        assertArrayEquals(blob(i), store.get(HashFunctions.sha256().hash(blob(i))).orElseThrow());
+      }
+    }
+  }
+
+  @Test
+  void testCorruptionDetected() throws Exception {
+    Digest digest;
+    try (var store = BlobStore.open(tempDir, HashFunctions.sha256())) {
+      digest = store.put(blob(1));
+    }
+    try (var files = Files.list(tempDir)) {
+      var pack = files.filter(file -> file.toString().endsWith(".pack")).findFirst().orElseThrow();
+      try (var channel = FileChannel.open(pack, StandardOpenOption.WRITE)) {
+        channel.write(ByteBuffer.wrap(new byte[] {(byte) 0xff}), 0);
+      }
+    }
+
+    try (var store = BlobStore.open(tempDir, HashFunctions.sha256())) {
+      assertThrows(IOException.class, () -> store.get(digest));
+    }
+  }
+
+  @Test
+  void testCompact() throws Exception {
+    var digests = new Digest[1000];
+    try (var store = BlobStore.open(tempDir, HashFunctions.sha256(), 10000)) {
+      for (int i = 0; i < digests.length; i++) {
+        digests[i] = store.put(blob(i));
+      }
+      for (int i = 0; i < digests.length; i++) {
+        if (i % 4 != 0) {
+          store.delete(digests[i]);
+        }
+      }
+      long packsBefore = packCount();
+
+      assertTrue(store.compact() > 0);
+
+      assertTrue(packCount() < packsBefore);
+      assertEquals(250, store.size());
+      for (int i = 0; i < digests.length; i += 4) {
+        assertArrayEquals(blob(i), store.get(digests[i]).orElseThrow());
+      }
+    }
+
+    try (var store = BlobStore.open(tempDir, HashFunctions.sha256(), 10000)) {
+      for (int i = 0; i < digests.length; i++) {
+        assertEquals(i % 4 == 0, store.contains(digests[i]));
+      }
+    }
+  }
+
+  @Test
+  void testCompactAsyncWithConcurrentReads() throws Exception {
+    var executor = Executors.newSingleThreadExecutor();
+    try (var store = BlobStore.open(tempDir, HashFunctions.sha256(), 10000)) {
+      var digests = new Digest[500];
+      for (int i = 0; i < digests.length; i++) {
+        digests[i] = store.put(blob(i));
+      }
+      for (int i = 0; i < digests.length; i += 2) {
+        store.delete(digests[i]);
+      }
+
+      var compaction = store.compactAsync(executor);
+      for (int i = 1; i < digests.length; i += 2) {
+        assertArrayEquals(blob(i), store.get(digests[i]).orElseThrow());
+      }
+      compaction.get();
+
+      for (int i = 1; i < digests.length; i += 2) {
+        assertArrayEquals(blob(i), store.get(digests[i]).orElseThrow());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void testCompactWithConcurrentPuts() throws Exception {
+    var executor = Executors.newFixedThreadPool(4);
+    // Small packs, so that writers start new ones while compaction is choosing candidates
+    try (var store = BlobStore.open(tempDir, HashFunctions.sha256(), 2000)) {
+      var done = new AtomicBoolean();
+      var compaction = CompletableFuture.runAsync(() -> {
+        while (!done.get()) {
+          try {
+            store.compact();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }
+      }, executor);
+      var puts = IntStream.range(0, 3).mapToObj(thread -> CompletableFuture.supplyAsync(() -> {
+        try {
+          var digests = new ArrayList<Digest>();
+          for (int i = thread; i < 3000; i += 3) {
+            digests.add(store.put(blob(i)));
+            if (i % 2 == 0) {
+              store.delete(digests.get(digests.size() - 1));
+            }
+          }
+          return digests;
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }, executor)).toList();
+      var digests = new ArrayList<Digest>();
+      for (var put : puts) {
+        digests.addAll(put.get());
+      }
+      done.set(true);
+      compaction.get();
+
+      for (int i = 0; i < digests.size(); i++) {
+        int blob = i / 1000 + (i % 1000) * 3;
+        assertEquals(blob % 2 != 0, store.contains(digests.get(i)));
+        if (blob % 2 != 0) {
+          assertArrayEquals(blob(blob), store.get(digests.get(i)).orElseThrow());
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void testMalformedPackName() throws Exception {
+    Files.createFile(tempDir.resolve("pack-oops.pack"));
+
+    var exception = assertThrows(IOException.class,
+        () -> BlobStore.open(tempDir, HashFunctions.sha256()));
+    assertTrue(exception.getMessage().contains("pack-oops.pack"), exception.getMessage());
+  }
+
+  @Test
+  void testDeleteWithMissingPack() throws Exception {
+    Digest digest;
+    try (var store = BlobStore.open(tempDir, HashFunctions.sha256())) {
+      digest = store.put(blob(1));
+    }
+    try (var files = Files.list(tempDir)) {
+      for (var pack : files.filter(file -> file.toString().endsWith(".pack")).toList()) {
+        Files.delete(pack);
+      }
+    }
+
+    try (var store = BlobStore.open(tempDir, HashFunctions.sha256())) {
+      assertThrows(IOException.class, () -> store.delete(digest));
+      assertThrows(IOException.class, () -> store.get(digest));
+    }
+  }
+
+  @Test
+  void testInvalidArguments() {
+    assertThrows(IllegalArgumentException.class,
+        () -> BlobStore.open(tempDir, HashFunctions.crc32c()));
+    assertThrows(IllegalArgumentException.class,
+        () -> BlobStore.open(tempDir, HashFunctions.sha256(), 0));
+  }
+}
@@ -0,0 +1,123 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class ByteArrayInternerTest {
+  @Test
+  void testIntern() {
+    var interner = ByteArrayInterner.create();
+    var first = new byte[] {1, 2, 3};
+    var second = new byte[] {1, 2, 3};
+    var other = new byte[] {1, 2, 4};
+
+    assertSame(first, interner.intern(first));
+    assertSame(first, interner.intern(second));
+    assertSame(other, interner.intern(other));
+
+    assertEquals(2, interner.size());
+    assertEquals(1, interner.hitCount());
+    assertEquals(2, interner.missCount());
+    assertEquals(3, interner.bytesSaved());
+    assertEquals(1.0 / 3, interner.hitRate(), 1e-9);
+  }
+
+  @Test
+  void testEmptyArray() {
+    var interner = ByteArrayInterner.create(1);
+    var empty = new byte[0];
+
+    assertSame(empty, interner.intern(empty));
+    assertSame(empty, interner.intern(new byte[0]));
+  }
+
+  @Test
+  void testNoHits() {
+    var interner = ByteArrayInterner.create();
+
+    assertEquals(0.0, interner.hitRate());
+  }
+
+  @Test
+  void testManyArrays() {
+    var interner = ByteArrayInterner.create(4);
+    var canonical = new ArrayList<byte[]>();
+    for (int i = 0; i < 10_000; i++) {
+      canonical.add(interner.intern(Integer.toString(i).getBytes()));
+    }
+    for (int i = 0; i < 10_000; i++) {
+      assertSame(canonical.get(i), interner.intern(Integer.toString(i).getBytes()));
+    }
+
+    assertEquals(10_000, interner.size());
+    assertEquals(10_000, interner.hitCount());
+  }
+
+  @Test
+  void testConcurrent() throws Exception {
+    var interner = ByteArrayInterner.create();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      var futures = new ArrayList<Future<byte[][]>>();
+      for (int t = 0; t < 8; t++) {
+        futures.add(executor.submit(() -> {
+          var results = new byte[1000][];
+          for (int i = 0; i < results.length; i++) {
+            results[i] = interner.intern(Integer.toString(i).getBytes());
+          }
+          return results;
+        }));
+      }
+      var first = futures.get(0).get();
+      for (var future : futures) {
+        var results = future.get();
+        for (int i = 0; i < results.length; i++) {
+          assertSame(first[i], results[i]);
+        }
+      }
+
+      assertEquals(1000, interner.missCount());
+      assertEquals(7000, interner.hitCount());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void testCollectedArraysAreRemoved() throws InterruptedException {
+    var interner = ByteArrayInterner.create(1);
+    interner.intern(new byte[] {1, 2, 3});
+    assertEquals(1, interner.size());
+
+    // The interner holds the only reference, and it is weak
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (interner.size() > 0 && System.nanoTime() < deadline) {
+      System.gc();
+      Thread.sleep(10);
+    }
+
+    assertEquals(0, interner.size());
+    var replacement = new byte[] {1, 2, 3};
+    assertSame(replacement, interner.intern(replacement));
+  }
+
+  @Test
+  void testLargeConcurrency() {
+    var interner = ByteArrayInterner.create(Integer.MAX_VALUE);
+    var first = new byte[] {1};
+
+    assertSame(first, interner.intern(first));
+    assertSame(first, interner.intern(new byte[] {1}));
+  }
+
+  @Test
+  void testInvalidConcurrency() {
+    assertThrows(IllegalArgumentException.class, () -> ByteArrayInterner.create(0));
+  }
+}
@@ -0,0 +1,126 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import static com.github.benjaminmoran.superfluous.hash.TestData.randomBytes;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32C;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for known CRC input-output pairs and for combining checksums.
+ * <p>
+ * The check values are from the <a href="https://reveng.sourceforge.io/crc-catalogue/">Catalogue
+ * of parametrised CRC algorithms</a>.
+ */
+class CrcFunctionTest {
+  private static final byte[] CHECK_INPUT = "123456789".getBytes(StandardCharsets.US_ASCII);
+
+  private static List<CrcFunction> functions() {
+    return List.of(HashFunctions.crc32c(), HashFunctions.crc64Nvme());
+  }
+
+  @Test
+  void testCrc32cCheck() {
+    assertEquals("e3069283", HashFunctions.crc32c().hash(CHECK_INPUT).hex());
+  }
+
+  @Test
+  void testCrc64NvmeCheck() {
+    assertEquals("ae8b14860a799888", HashFunctions.crc64Nvme().hash(CHECK_INPUT).hex());
+  }
+
+  @Test
+  void testEmpty() {
+    assertEquals("00000000", HashFunctions.crc32c().hash(new byte[0]).hex());
+    assertEquals("0000000000000000", HashFunctions.crc64Nvme().hash(new byte[0]).hex());
+  }
+
+  @Test
+  void testCrc32cMatchesJdk() {
+    var input = randomBytes(10007);
+    var jdk = new CRC32C();
+    jdk.update(input);
+
+    assertEquals(jdk.getValue(), HashFunctions.crc32c().checksum(input, 0, input.length));
+  }
+
+  @Test
+  void testChecksumMatchesDigest() {
+    var input = randomBytes(1001);
+    for (var function : functions()) {
+      var digest = function.hash(input);
+
+      assertEquals(function.checksum(digest), function.checksum(input, 0, input.length));
+      assertEquals(function.checksum(digest), function.checksum(ByteBuffer.wrap(input)));
+      assertEquals(function.checksum(digest),
+          function.checksum(ByteBuffer.allocateDirect(input.length).put(input).flip()));
+    }
+  }
+
+  @Test
+  void testIncremental() {
+    var input = randomBytes(1000);
+    for (var function : functions()) {
+      var hasher = function.init();
+      for (int offset = 0; offset < input.length; offset += 37) {
+        hasher.update(input, offset, Math.min(37, input.length - offset));
+      }
+
+      assertEquals(function.hash(input), hasher.digest());
+    }
+  }
+
+  @Test
+  void testCombine() {
+    var input = randomBytes(5000);
+    for (var function : functions()) {
+      long expected = function.checksum(input, 0, input.length);
+      for (int split : new int[] {0, 1, 7, 8, 2500, 4999, 5000}) {
+        long crcA = function.checksum(input, 0, split);
+        long crcB = function.checksum(input, split, input.length - split);
+
+        assertEquals(expected, function.combine(crcA, crcB, input.length - split));
+      }
+    }
+  }
+
+  @Test
+  void testCombineDigests() {
+    var input = randomBytes(100);
+    for (var function : functions()) {
+      var digestA = function.hash(input, 0, 30);
+      var digestB = function.hash(input, 30, 70);
+
+      assertEquals(function.hash(input), function.combine(digestA, digestB, 70));
+    }
+  }
+
+  @Test
+  void testCombineInvalidLength() {
+    assertThrows(IllegalArgumentException.class, () -> HashFunctions.crc32c().combine(0, 0, -1));
+  }
+
+  @Test
+  void testHashParallel() {
+    var input = randomBytes((5 << 20) + 3);
+    for (var function : functions()) {
+      var buffer = ByteBuffer.wrap(input).position(11);
+
+      var digest = function.hashParallel(buffer);
+
+      assertEquals(function.hash(input, 11, input.length - 11), digest);
+      assertEquals(11, buffer.position());
+    }
+  }
+
+  @Test
+  void testHashParallelSmall() {
+    var input = randomBytes(10);
+    for (var function : functions()) {
+      assertEquals(function.hash(input), function.hashParallel(ByteBuffer.wrap(input)));
+    }
+  }
+}
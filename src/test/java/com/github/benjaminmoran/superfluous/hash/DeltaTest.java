@@ -0,0 +1,206 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import static com.github.benjaminmoran.superfluous.hash.TestData.randomBytes;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DeltaTest {
+  @TempDir
+  Path dir;
+
+  /**
+   * Returns a copy of {@code basis} with a few bytes changed, inserted and deleted.
+   */
+  private static byte[] edit(byte[] basis) {
+    var out = new ByteArrayOutputStream();
+    int third = basis.length / 3;
+    out.write(basis, 0, third);
+    out.writeBytes("inserted".getBytes());
+    out.write(basis, third, third);
+    out.write(basis, 2 * third + 100, basis.length - 2 * third - 100);
+    var edited = out.toByteArray();
+    edited[edited.length / 2] ^= 1;
+    return edited;
+  }
+
+  private byte[] roundTrip(byte[] basis, byte[] target, int blockSize) throws IOException {
+    var basisFile = dir.resolve("basis");
+    Files.write(basisFile, basis);
+    var signature = DeltaSignature.compute(basisFile, blockSize);
+    var delta = new ByteArrayOutputStream();
+    Delta.encode(signature, ByteBuffer.wrap(target), delta);
+    var result = new ByteArrayOutputStream();
+    Delta.apply(basisFile, new ByteArrayInputStream(delta.toByteArray()), result);
+    return result.toByteArray();
+  }
+
+  @Test
+  void testRoundTrip() throws IOException {
+    var basis = randomBytes(100_000, 1);
+    var target = edit(basis);
+
+    assertArrayEquals(target, roundTrip(basis, target, 512));
+    assertArrayEquals(target, roundTrip(basis, target, 1));
+    assertArrayEquals(target, roundTrip(basis, target, 1 << 20));
+  }
+
+  @Test
+  void testLiteralsAreFew() throws IOException {
+    var basisFile = dir.resolve("basis");
+    var targetFile = dir.resolve("target");
+    var basis = randomBytes(1_000_000, 2);
+    var target = edit(basis);
+    Files.write(basisFile, basis);
+    Files.write(targetFile, target);
+    var signature = DeltaSignature.compute(basisFile, 1000);
+    var delta = new ByteArrayOutputStream();
+
+    long literalBytes = Delta.encode(signature, targetFile, delta);
+
+    // Each of the three edits costs at most two blocks, plus the partial final block
+    assertTrue(literalBytes <= 7 * 1000, "literal bytes: " + literalBytes);
+    assertTrue(delta.size() < 10_000, "delta size: " + delta.size());
+    var result = new ByteArrayOutputStream();
+    Delta.apply(basisFile, new ByteArrayInputStream(delta.toByteArray()), result);
+    assertArrayEquals(target, result.toByteArray());
+  }
+
+  @Test
+  void testIdentical() throws IOException {
+    var basis = randomBytes(10_000, 3);
+    var basisFile = dir.resolve("basis");
+    Files.write(basisFile, basis);
+    var signature = DeltaSignature.compute(basisFile, 1000);
+    var delta = new ByteArrayOutputStream();
+
+    assertEquals(0, Delta.encode(signature, ByteBuffer.wrap(basis), delta));
+    // The header with the basis length, one copy instruction, and the end marker with the digest
+    assertEquals(16 + 9 + 1 + 32, delta.size());
+  }
+
+  @Test
+  void testRegions() throws IOException {
+    // Small regions force remapping, including windows and literals spanning a boundary
+    var basisFile = dir.resolve("basis");
+    var targetFile = dir.resolve("target");
+    var basis = randomBytes(3_000_000, 4);
+    var target = edit(basis);
+    System.arraycopy(randomBytes(1_500_000, 5), 0, target, 200_000, 1_500_000);
+    Files.write(basisFile, basis);
+    Files.write(targetFile, target);
+    var signature = DeltaSignature.compute(basisFile, 700);
+    var delta = new ByteArrayOutputStream();
+
+    Delta.encode(signature, targetFile, delta, 4093);
+
+    var result = new ByteArrayOutputStream();
+    Delta.apply(basisFile, new ByteArrayInputStream(delta.toByteArray()), result);
+    assertArrayEquals(target, result.toByteArray());
+  }
+
+  @Test
+  void testEmpty() throws IOException {
+    assertArrayEquals(new byte[0], roundTrip(new byte[0], new byte[0], 16));
+    assertArrayEquals(new byte[] {1, 2}, roundTrip(new byte[0], new byte[] {1, 2}, 16));
+    assertArrayEquals(new byte[0], roundTrip(randomBytes(100, 6), new byte[0], 16));
+  }
+
+  @Test
+  void testDefaultBlockSize() throws IOException {
+    var basisFile = dir.resolve("basis");
+    Files.write(basisFile, randomBytes(10_000_000, 7));
+
+    assertEquals(3160, DeltaSignature.compute(basisFile).blockSize());
+  }
+
+  @Test
+  void testSignatureSerialization() throws IOException {
+    var basis = randomBytes(10_000, 8);
+    var signature = DeltaSignature.compute(new ByteArrayInputStream(basis), 300);
+    var out = new ByteArrayOutputStream();
+
+    signature.writeTo(out);
+    var read = DeltaSignature.read(new ByteArrayInputStream(out.toByteArray()));
+
+    assertEquals(300, read.blockSize());
+    assertEquals(33, read.blockCount());
+    assertEquals(10_000, read.basisLength());
+    var target = edit(basis);
+    var expected = new ByteArrayOutputStream();
+    var actual = new ByteArrayOutputStream();
+    Delta.encode(signature, ByteBuffer.wrap(target), expected);
+    Delta.encode(read, ByteBuffer.wrap(target), actual);
+    assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+  }
+
+  @Test
+  void testStaleBasis() throws IOException {
+    var basis = randomBytes(10_000, 9);
+    var basisFile = dir.resolve("basis");
+    Files.write(basisFile, basis);
+    var signature = DeltaSignature.compute(basisFile, 100);
+    var delta = new ByteArrayOutputStream();
+    Delta.encode(signature, ByteBuffer.wrap(edit(basis)), delta);
+    basis[5000] ^= 1;
+    Files.write(basisFile, basis);
+
+    assertThrows(IOException.class, () -> Delta.apply(basisFile,
+        new ByteArrayInputStream(delta.toByteArray()), new ByteArrayOutputStream()));
+  }
+
+  @Test
+  void testBasisLengthCheckedFirst() throws IOException {
+    var basis = randomBytes(10_000, 10);
+    var basisFile = dir.resolve("basis");
+    Files.write(basisFile, basis);
+    var signature = DeltaSignature.compute(basisFile, 100);
+    var delta = new ByteArrayOutputStream();
+    Delta.encode(signature, ByteBuffer.wrap(edit(basis)), delta);
+    Files.write(basisFile, Arrays.copyOf(basis, basis.length - 1));
+    var result = new ByteArrayOutputStream();
+
+    assertThrows(IOException.class, () -> Delta.apply(basisFile,
+        new ByteArrayInputStream(delta.toByteArray()), result));
+    assertEquals(0, result.size());
+  }
+
+  @Test
+  void testRollingChecksum() {
+    var bytes = randomBytes(1000, 10);
+    var rolling = new RollingChecksum(64);
+    var fresh = new RollingChecksum(64);
+    rolling.reset(ByteBuffer.wrap(bytes), 0);
+    for (int i = 1; i + 64 <= bytes.length; i++) {
+      rolling.roll(bytes[i - 1], bytes[i + 63]);
+      fresh.reset(ByteBuffer.wrap(bytes), i);
+
+      assertEquals(fresh.value(), rolling.value(), "offset " + i);
+    }
+  }
+
+  @Test
+  void testInvalidBlockSize() {
+    assertThrows(IllegalArgumentException.class,
+        () -> DeltaSignature.compute(new ByteArrayInputStream(new byte[0]), 0));
+    assertThrows(IllegalArgumentException.class,
+        () -> DeltaSignature.compute(new ByteArrayInputStream(new byte[0]), (1 << 20) + 1));
+  }
+
+  @Test
+  void testNotADelta() throws IOException {
+    var basisFile = dir.resolve("basis");
+    Files.write(basisFile, new byte[10]);
+
+    assertThrows(IOException.class, () -> Delta.apply(basisFile,
+        new ByteArrayInputStream(new byte[20]), new ByteArrayOutputStream()));
+  }
+}
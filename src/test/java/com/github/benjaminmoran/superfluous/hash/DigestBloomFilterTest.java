@@ -0,0 +1,111 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import static com.github.benjaminmoran.superfluous.hash.TestData.digestOf;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DigestBloomFilterTest {
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testNoFalseNegatives() {
+    var filter = DigestBloomFilter.create(1000, 0.01);
+
+    for (int i = 0; i < 1000; i++) {
+      filter.put(digestOf(i));
+    }
+
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(filter.mightContain(digestOf(i)));
+    }
+  }
+
+  @Test
+  void testFalsePositiveRate() {
+    var filter = DigestBloomFilter.create(10000, 0.01);
+    for (int i = 0; i < 10000; i++) {
+      filter.put(digestOf(i));
+    }
+
+    long falsePositives = IntStream.range(10000, 20000)
+        .filter(i -> filter.mightContain(digestOf(i)))
+        .count();
+
+    assertTrue(falsePositives < 200, "false positives: " + falsePositives);
+  }
+
+  @Test
+  void testPutReportsChange() {
+    var filter = DigestBloomFilter.create(100, 0.01);
+    var digest = digestOf(1);
+
+    assertFalse(filter.mightContain(digest));
+    assertTrue(filter.put(digest));
+    assertFalse(filter.put(digest));
+  }
+
+  @Test
+  void testSizing() {
+    var filter = DigestBloomFilter.create(1000, 0.01);
+
+    assertEquals(7, filter.hashCount());
+    assertTrue(filter.bitCount() >= 9585);
+  }
+
+  @Test
+  void testConcurrentPut() {
+    var filter = DigestBloomFilter.create(100000, 0.01);
+
+    IntStream.range(0, 100000).parallel().forEach(i -> filter.put(digestOf(i)));
+
+    assertTrue(IntStream.range(0, 100000).allMatch(i -> filter.mightContain(digestOf(i))));
+  }
+
+  @Test
+  void testPersistence() throws Exception {
+    var file = tempDir.resolve("filter.bloom");
+    var filter = DigestBloomFilter.create(file, 1000, 0.01);
+    for (int i = 0; i < 1000; i++) {
+      filter.put(digestOf(i));
+    }
+    filter.force();
+
+    var reopened = DigestBloomFilter.open(file);
+
+    assertEquals(filter.hashCount(), reopened.hashCount());
+    assertEquals(filter.bitCount(), reopened.bitCount());
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(reopened.mightContain(digestOf(i)));
+    }
+  }
+
+  @Test
+  void testOpenInvalidFile() throws Exception {
+    var file = tempDir.resolve("not-a-filter");
+    Files.write(file, new byte[64]);
+
+    assertThrows(IOException.class, () -> DigestBloomFilter.open(file));
+  }
+
+  @Test
+  void testShortDigest() {
+    var filter = DigestBloomFilter.create(100, 0.01);
+    var digest = Digest.of(HashFunctions.sha256(), new byte[8]);
+
+    assertThrows(IllegalArgumentException.class, () -> filter.put(digest));
+  }
+
+  @Test
+  void testInvalidArguments() {
+    assertThrows(IllegalArgumentException.class, () -> DigestBloomFilter.create(0, 0.01));
+    assertThrows(IllegalArgumentException.class, () -> DigestBloomFilter.create(100, 0.0));
+    assertThrows(IllegalArgumentException.class, () -> DigestBloomFilter.create(100, 1.0));
+  }
+}
@@ -0,0 +1,114 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import static com.github.benjaminmoran.superfluous.hash.TestData.digestOf;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DigestCuckooFilterTest {
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testNoFalseNegatives() {
+    var filter = DigestCuckooFilter.create(10000);
+
+    for (int i = 0; i < 10000; i++) {
+      assertTrue(filter.put(digestOf(i)));
+    }
+
+    for (int i = 0; i < 10000; i++) {
+      assertTrue(filter.mightContain(digestOf(i)));
+    }
+  }
+
+  @Test
+  void testFalsePositiveRate() {
+    var filter = DigestCuckooFilter.create(10000);
+    for (int i = 0; i < 10000; i++) {
+      filter.put(digestOf(i));
+    }
+
+    long falsePositives = IntStream.range(10000, 110000)
+        .filter(i -> filter.mightContain(digestOf(i)))
+        .count();
+
+    assertTrue(falsePositives < 100, "false positives: " + falsePositives);
+  }
+
+  @Test
+  void testRemove() {
+    var filter = DigestCuckooFilter.create(100);
+    var digest = digestOf(1);
+
+    filter.put(digest);
+    assertTrue(filter.remove(digest));
+
+    assertFalse(filter.mightContain(digest));
+    assertFalse(filter.remove(digest));
+  }
+
+  @Test
+  void testFillsToCapacity() {
+    var filter = DigestCuckooFilter.create(4096);
+    int slots = 4 * filter.bucketCount();
+
+    int inserted = 0;
+    while (inserted < slots && filter.put(digestOf(inserted))) {
+      inserted++;
+    }
+
+    assertTrue(inserted > 0.9 * slots, "inserted " + inserted + " of " + slots);
+    for (int i = 0; i < inserted; i++) {
+      assertTrue(filter.mightContain(digestOf(i)));
+    }
+  }
+
+  @Test
+  void testConcurrentPutAndRemove() {
+    var filter = DigestCuckooFilter.create(100000);
+
+    IntStream.range(0, 100000).parallel().forEach(i -> assertTrue(filter.put(digestOf(i))));
+    IntStream.range(0, 50000).parallel().forEach(i -> assertTrue(filter.remove(digestOf(i))));
+
+    assertTrue(IntStream.range(50000, 100000).allMatch(i -> filter.mightContain(digestOf(i))));
+  }
+
+  @Test
+  void testPersistence() throws Exception {
+    var file = tempDir.resolve("filter.cuckoo");
+    var filter = DigestCuckooFilter.create(file, 1000);
+    for (int i = 0; i < 1000; i++) {
+      filter.put(digestOf(i));
+    }
+    filter.force();
+
+    var reopened = DigestCuckooFilter.open(file);
+
+    assertEquals(filter.bucketCount(), reopened.bucketCount());
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(reopened.mightContain(digestOf(i)));
+    }
+  }
+
+  @Test
+  void testOpenInvalidFile() throws Exception {
+    var file = tempDir.resolve("not-a-filter");
+    Files.write(file, new byte[64]);
+
+    assertThrows(IOException.class, () -> DigestCuckooFilter.open(file));
+  }
+
+  @Test
+  void testShortDigest() {
+    var filter = DigestCuckooFilter.create(100);
+    var digest = Digest.of(HashFunctions.sha256(), new byte[8]);
+
+    assertThrows(IllegalArgumentException.class, () -> filter.mightContain(digest));
+  }
+}
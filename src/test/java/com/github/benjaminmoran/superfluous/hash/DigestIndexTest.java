@@ -0,0 +1,134 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DigestIndexTest {
+  @TempDir
+  Path dir;
+
+  private static List<Digest> digests(int start, int count) {
+    var digests = new ArrayList<Digest>();
+    for (int i = start; i < start + count; i++) {
+      digests.add(HashFunctions.sha256().hash(ByteBuffer.allocate(4).putInt(i).array()));
+    }
+    return digests;
+  }
+
+  @Test
+  void testContains() throws IOException {
+    var file = dir.resolve("index");
+    var present = digests(0, 20_000);
+
+    assertEquals(20_000, DigestIndex.write(file, HashFunctions.sha256(), present));
+    var index = DigestIndex.open(file);
+
+    assertEquals(20_000, index.size());
+    assertEquals(32, index.digestLength());
+    for (var digest : present) {
+      assertTrue(index.contains(digest), digest.hex());
+    }
+    for (var digest : digests(20_000, 20_000)) {
+      assertFalse(index.contains(digest), digest.hex());
+    }
+  }
+
+  @Test
+  void testRecordsAreSorted() throws IOException {
+    var file = dir.resolve("index");
+    DigestIndex.write(file, HashFunctions.sha256(), digests(0, 1000));
+
+    var bytes = Files.readAllBytes(file);
+    int recordsStart = bytes.length - 1000 * 32;
+    for (int i = 1; i < 1000; i++) {
+      int a = recordsStart + (i - 1) * 32;
+      int b = recordsStart + i * 32;
+      assertTrue(Arrays.compareUnsigned(bytes, a, a + 32, bytes, b, b + 32) < 0);
+    }
+  }
+
+  @Test
+  void testDuplicates() throws IOException {
+    var file = dir.resolve("index");
+    var input = new ArrayList<>(digests(0, 500));
+    input.addAll(digests(250, 500));
+
+    assertEquals(750, DigestIndex.write(file, HashFunctions.sha256(), input));
+    assertEquals(750, DigestIndex.open(file).size());
+  }
+
+  @Test
+  void testSharedPrefixes() throws IOException {
+    // Digests which agree on their first 8 bytes defeat interpolation
+    var file = dir.resolve("index");
+    var input = new ArrayList<Digest>();
+    for (int i = 0; i < 300; i += 2) {
+      var bytes = new byte[32];
+      bytes[31] = (byte) i;
+      bytes[30] = (byte) (i >> 8);
+      input.add(Digest.of(HashFunctions.sha256(), bytes));
+    }
+    DigestIndex.write(file, HashFunctions.sha256(), input);
+    var index = DigestIndex.open(file);
+
+    for (int i = 0; i < 300; i++) {
+      var bytes = new byte[32];
+      bytes[31] = (byte) i;
+      bytes[30] = (byte) (i >> 8);
+      assertEquals(i % 2 == 0, index.contains(Digest.of(HashFunctions.sha256(), bytes)));
+    }
+  }
+
+  @Test
+  void testEmpty() throws IOException {
+    var file = dir.resolve("index");
+    DigestIndex.write(file, HashFunctions.sha256(), List.of());
+    var index = DigestIndex.open(file);
+
+    assertEquals(0, index.size());
+    assertFalse(index.contains(digests(0, 1).get(0)));
+  }
+
+  @Test
+  void testCrc64() throws IOException {
+    var file = dir.resolve("index");
+    var function = HashFunctions.crc64Nvme();
+    DigestIndex.write(file, function, List.of(function.hash(new byte[] {1})));
+    var index = DigestIndex.open(file);
+
+    assertTrue(index.contains(function.hash(new byte[] {1})));
+    assertFalse(index.contains(function.hash(new byte[] {2})));
+  }
+
+  @Test
+  void testInvalidDigests() throws IOException {
+    var file = dir.resolve("index");
+
+    assertThrows(IllegalArgumentException.class,
+        () -> DigestIndex.write(file, HashFunctions.crc32c(), List.of()));
+    assertThrows(IllegalArgumentException.class, () -> DigestIndex.write(file,
+        HashFunctions.sha256(), List.of(HashFunctions.crc64Nvme().hash(new byte[0]))));
+
+    DigestIndex.write(file, HashFunctions.sha256(), List.of());
+    var index = DigestIndex.open(file);
+    assertThrows(IllegalArgumentException.class,
+        () -> index.contains(HashFunctions.crc64Nvme().hash(new byte[0])));
+  }
+
+  @Test
+  void testNotAnIndex() throws IOException {
+    var file = dir.resolve("index");
+    Files.write(file, new byte[100]);
+
+    assertThrows(IOException.class, () -> DigestIndex.open(file));
+  }
+}
@@ -54,6 +54,17 @@ class HashFunctionTest {
     assertEquals(digest, function.hash(slicedCopy));
   }
 
+  @Test
+  void testHashFunnel() {
+    var function = HashFunctions.sha256();
+    Funnel<String> funnel = (from, into) -> into.putLengthPrefixedString(from);
+
+    var digest = function.hash("abc", funnel);
+
+    assertEquals(function.init().putLengthPrefixedString("abc").digest(), digest);
+    assertEquals(function.hash(new byte[] {0, 0, 0, 3, 'a', 'b', 'c'}), digest);
+  }
+
   @Test
   void testInit() {
     var function = HashFunctions.sha256();
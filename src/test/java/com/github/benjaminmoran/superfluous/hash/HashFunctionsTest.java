@@ -24,4 +24,26 @@ class HashFunctionsTest {
     assertInstanceOf(Sha256Hasher.class, hasher);
     assertEquals(HashFunctions.sha256(), hasher.algorithm());
   }
+
+  @Test
+  void testCrc32c() {
+    var function = HashFunctions.crc32c();
+
+    assertEquals("CRC-32C", function.name());
+    assertEquals(32, Byte.SIZE * function.digestLength());
+    var hasher = function.init();
+    assertInstanceOf(Crc32cHasher.class, hasher);
+    assertEquals(HashFunctions.crc32c(), hasher.algorithm());
+  }
+
+  @Test
+  void testCrc64Nvme() {
+    var function = HashFunctions.crc64Nvme();
+
+    assertEquals("CRC-64/NVME", function.name());
+    assertEquals(64, Byte.SIZE * function.digestLength());
+    var hasher = function.init();
+    assertInstanceOf(Crc64NvmeHasher.class, hasher);
+    assertEquals(HashFunctions.crc64Nvme(), hasher.algorithm());
+  }
 }
@@ -1,11 +1,53 @@
 package com.github.benjaminmoran.superfluous.hash;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.List;
+import java.util.function.UnaryOperator;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class HasherTest {
+  /**
+   * Implements only the abstract methods of {@code Hasher}, so that its defaults are tested.
+   */
+  private static final HashFunction UPDATE_ONLY =
+      HashFunction.of("update-only", 32, UpdateOnlyHasher::new);
+
+  /**
+   * A block hasher, hashers which implement the put methods with a scratch array, and a hasher
+   * which uses the interface defaults.
+   */
+  private static final List<HashFunction> PUT_FUNCTIONS = List.of(
+      HashFunctions.sha256(),
+      HashFunctions.crc32c(),
+      HashFunctions.crc64Nvme(),
+      MultiHashFunction.of(HashFunctions.sha256(), HashFunctions.crc32c()),
+      UPDATE_ONLY
+  );
+
+  /**
+   * Checks that a put method is equivalent to updating with the expected encoding, at every
+   * position within a block.
+   */
+  private static void testPut(UnaryOperator<Hasher> put, byte[] expectedEncoding) {
+    for (var function : PUT_FUNCTIONS) {
+      for (int prefix = 0; prefix < 64; prefix++) {
+        var prefixBytes = new byte[prefix];
+        Arrays.fill(prefixBytes, (byte) prefix);
+        var expected = function.init().update(prefixBytes).update(expectedEncoding).digest();
+
+        var hasher = function.init().update(prefixBytes);
+        var hasherReturned = put.apply(hasher);
+
+        assertSame(hasher, hasherReturned);
+        assertEquals(expected, hasher.digest(), function + " with prefix " + prefix);
+      }
+    }
+  }
+
   @Test
   void testAlgorithm() {
     var function = HashFunctions.sha256();
@@ -63,4 +105,123 @@ class HasherTest {
 
     assertEquals(function.hash(input), hasher.digest());
   }
+
+  @Test
+  void testPutByte() {
+    testPut(hasher -> hasher.putByte((byte) 0xab), new byte[] {(byte) 0xab});
+  }
+
+  @Test
+  void testPutInt() {
+    testPut(hasher -> hasher.putInt(0x01020304), new byte[] {1, 2, 3, 4});
+  }
+
+  @Test
+  void testPutLong() {
+    testPut(
+        hasher -> hasher.putLong(0x0102030405060708L),
+        new byte[] {1, 2, 3, 4, 5, 6, 7, 8}
+    );
+  }
+
+  @Test
+  void testPutDouble() {
+    testPut(
+        hasher -> hasher.putDouble(1.5),
+        ByteBuffer.allocate(8).putDouble(1.5).array()
+    );
+  }
+
+  @Test
+  void testPutChars() {
+    // Longer than the scratch array of AbstractHasher
+    var input = "h\u00e9llo \u4e16\u754c".repeat(30);
+    testPut(hasher -> hasher.putChars(input), input.getBytes(StandardCharsets.UTF_16BE));
+  }
+
+  @Test
+  void testPutStringUtf8() {
+    // ASCII, 2-byte, 3-byte and 4-byte sequences, and an unpaired surrogate
+    var input = "a\u00e9\u4e16\ud83d\ude00\ud800b" + "x".repeat(300);
+    testPut(
+        hasher -> hasher.putString(input, StandardCharsets.UTF_8),
+        input.getBytes(StandardCharsets.UTF_8)
+    );
+  }
+
+  @Test
+  void testPutStringOtherCharset() {
+    var input = "h\u00e9llo";
+    testPut(
+        hasher -> hasher.putString(input, StandardCharsets.ISO_8859_1),
+        input.getBytes(StandardCharsets.ISO_8859_1)
+    );
+  }
+
+  @Test
+  void testPutBytes() {
+    var input = new byte[200];
+    Arrays.fill(input, (byte) 7);
+    testPut(hasher -> hasher.putBytes(ByteBuffer.wrap(input)), input);
+    testPut(
+        hasher -> hasher.putBytes(ByteBuffer.allocateDirect(input.length).put(input).flip()),
+        input
+    );
+  }
+
+  @Test
+  void testPutBytesAdvancesPosition() {
+    var buffer = ByteBuffer.allocateDirect(10).position(3);
+
+    HashFunctions.sha256().init().putBytes(buffer);
+
+    assertEquals(10, buffer.position());
+  }
+
+  @Test
+  void testPutLengthPrefixed() {
+    var input = new byte[] {9, 8, 7};
+    testPut(hasher -> hasher.putLengthPrefixed(input), new byte[] {0, 0, 0, 3, 9, 8, 7});
+  }
+
+  @Test
+  void testPutLengthPrefixedString() {
+    var input = "\u00e9\ud83d\ude00\udc00";
+    var encoded = input.getBytes(StandardCharsets.UTF_8);
+    var expected = ByteBuffer.allocate(4 + encoded.length).putInt(encoded.length).put(encoded);
+    testPut(hasher -> hasher.putLengthPrefixedString(input), expected.array());
+  }
+
+  @Test
+  void testPutObject() {
+    Funnel<int[]> funnel = (from, into) -> {
+      for (int i : from) {
+        into.putInt(i);
+      }
+    };
+    testPut(
+        hasher -> hasher.putObject(new int[] {1, 2}, funnel),
+        new byte[] {0, 0, 0, 1, 0, 0, 0, 2}
+    );
+  }
+
+  private static final class UpdateOnlyHasher implements Hasher {
+    private final Hasher delegate = HashFunctions.sha256().init();
+
+    @Override
+    public HashFunction algorithm() {
+      return UPDATE_ONLY;
+    }
+
+    @Override
+    public Hasher update(byte[] input, int offset, int length) {
+      delegate.update(input, offset, length);
+      return this;
+    }
+
+    @Override
+    public Digest digest() {
+      return Digest.of(UPDATE_ONLY, delegate.digest().bytes());
+    }
+  }
 }
@@ -0,0 +1,70 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class KeyedLongHashMapTest {
+  @Test
+  void testPutGet() {
+    var map = new KeyedLongHashMap<String>();
+
+    assertNull(map.put(1, "one"));
+    assertNull(map.put(-1, "minus one"));
+    assertEquals("one", map.put(1, "uno"));
+
+    assertEquals(2, map.size());
+    assertEquals("uno", map.get(1));
+    assertEquals("minus one", map.get(-1));
+    assertNull(map.get(2));
+    assertTrue(map.containsKey(-1));
+    assertFalse(map.containsKey(0));
+  }
+
+  @Test
+  void testNullValue() {
+    var map = new KeyedLongHashMap<String>();
+
+    assertThrows(NullPointerException.class, () -> map.put(1, null));
+  }
+
+  @Test
+  void testMatchesHashMap() {
+    var map = new KeyedLongHashMap<Long>(10);
+    var expected = new HashMap<Long, Long>();
+    var random = new Random(1);
+    for (int i = 0; i < 100_000; i++) {
+      // A small key range makes removals of present keys common
+      long key = random.nextInt(5000) * 0x100000000L;
+      long value = random.nextLong();
+      switch (random.nextInt(3)) {
+        case 0 -> assertEquals(expected.put(key, value), map.put(key, value));
+        case 1 -> assertEquals(expected.remove(key), map.remove(key));
+        default -> assertEquals(expected.get(key), map.get(key));
+      }
+    }
+
+    assertEquals(expected.size(), map.size());
+    var seen = new HashMap<Long, Long>();
+    map.forEach((value, key) -> seen.put(key, value));
+    assertEquals(expected, seen);
+  }
+
+  @Test
+  void testClear() {
+    var map = new KeyedLongHashMap<String>();
+    map.put(1, "one");
+
+    map.clear();
+
+    assertTrue(map.isEmpty());
+    assertNull(map.get(1));
+  }
+
+  @Test
+  void testNegativeExpectedSize() {
+    assertThrows(IllegalArgumentException.class, () -> new KeyedLongHashMap<String>(-1));
+  }
+}
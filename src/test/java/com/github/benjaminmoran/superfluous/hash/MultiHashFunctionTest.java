@@ -0,0 +1,80 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import static com.github.benjaminmoran.superfluous.hash.TestData.randomBytes;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+
+class MultiHashFunctionTest {
+  private static final MultiHashFunction FUNCTION = MultiHashFunction.of(
+      HashFunctions.sha256(), HashFunctions.crc32c(), HashFunctions.crc64Nvme());
+
+  private static void assertComponentDigests(byte[] input, Digest digest) {
+    var digests = FUNCTION.split(digest);
+
+    assertEquals(FUNCTION.functions(), List.copyOf(digests.keySet()));
+    digests.forEach((function, component) -> {
+      assertEquals(function.hash(input), component);
+      assertEquals(function, component.algorithm());
+    });
+  }
+
+  @Test
+  void testNameAndLength() {
+    assertEquals("SHA-256+CRC-32C+CRC-64/NVME", FUNCTION.name());
+    assertEquals(32 + 4 + 8, FUNCTION.digestLength());
+  }
+
+  @Test
+  void testHashAll() {
+    var input = "Hello, world!".getBytes();
+
+    var digests = FUNCTION.hashAll(input);
+
+    assertEquals(3, digests.size());
+    assertEquals(HashFunctions.sha256().hash(input), digests.get(HashFunctions.sha256()));
+    assertEquals(HashFunctions.crc32c().hash(input), digests.get(HashFunctions.crc32c()));
+  }
+
+  @Test
+  void testIncremental() {
+    var input = randomBytes(100000);
+    var hasher = FUNCTION.init();
+    hasher.update(input, 0, 5);
+    hasher.update(input, 5, 50000);
+    hasher.update(input, 50005, input.length - 50005);
+
+    var digest = hasher.digest();
+
+    assertEquals(FUNCTION, digest.algorithm());
+    assertComponentDigests(input, digest);
+  }
+
+  @Test
+  void testParallel() {
+    var input = randomBytes(3 << 20);
+    var executor = Executors.newFixedThreadPool(2);
+    try {
+      var function = FUNCTION.withExecutor(executor);
+      var hasher = function.init();
+      hasher.update(input, 0, 7);
+      hasher.update(input, 7, input.length - 7);
+
+      assertComponentDigests(input, hasher.digest());
+      assertEquals(FUNCTION.hash(input), function.hash(input));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void testInvalidArguments() {
+    var sha256 = HashFunctions.sha256();
+
+    assertThrows(IllegalArgumentException.class, () -> MultiHashFunction.of());
+    assertThrows(IllegalArgumentException.class, () -> MultiHashFunction.of(sha256, sha256));
+    assertThrows(IllegalArgumentException.class, () -> FUNCTION.split(sha256.hash(new byte[0])));
+  }
+}
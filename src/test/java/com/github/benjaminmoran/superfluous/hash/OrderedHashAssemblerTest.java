@@ -0,0 +1,136 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import static com.github.benjaminmoran.superfluous.hash.TestData.randomBytes;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+class OrderedHashAssemblerTest {
+  /**
+   * Splits {@code input} into chunks of random length and feeds them to an assembler in random
+   * order.
+   */
+  private static Digest assemble(byte[] input, long memoryLimit, int maxChunk, long seed)
+      throws IOException {
+    var random = new Random(seed);
+    var offsets = new ArrayList<int[]>();
+    for (int offset = 0; offset < input.length; ) {
+      int length = Math.min(input.length - offset, 1 + random.nextInt(maxChunk));
+      offsets.add(new int[] {offset, length});
+      offset += length;
+    }
+    Collections.shuffle(offsets, random);
+    try (var assembler =
+        OrderedHashAssembler.of(HashFunctions.sha256(), input.length, memoryLimit)) {
+      for (int[] chunk : offsets) {
+        assertFalse(assembler.result().isDone());
+        assembler.accept(chunk[0], ByteBuffer.wrap(input, chunk[0], chunk[1]));
+      }
+      return assembler.result().join();
+    }
+  }
+
+  @Test
+  void testInMemory() throws IOException {
+    var input = randomBytes(100_000);
+
+    assertEquals(HashFunctions.sha256().hash(input), assemble(input, Long.MAX_VALUE, 5000, 1));
+    // Chunks spanning several pooled buffers
+    assertEquals(HashFunctions.sha256().hash(input), assemble(input, Long.MAX_VALUE, 50_000, 6));
+  }
+
+  @Test
+  void testSpill() throws IOException {
+    var input = randomBytes(100_000);
+
+    assertEquals(HashFunctions.sha256().hash(input), assemble(input, 0, 5000, 2));
+    assertEquals(HashFunctions.sha256().hash(input), assemble(input, 20_000, 5000, 3));
+  }
+
+  @Test
+  void testOverlappingChunks() throws IOException {
+    var input = randomBytes(10_000);
+    var random = new Random(4);
+    try (var assembler = OrderedHashAssembler.of(HashFunctions.sha256(), input.length, 4000)) {
+      while (!assembler.result().isDone()) {
+        int offset = random.nextInt(input.length);
+        int length = random.nextInt(Math.min(2000, input.length - offset) + 1);
+        var chunk = ByteBuffer.allocateDirect(length).put(input, offset, length).flip();
+
+        assembler.accept(offset, chunk);
+
+        assertFalse(chunk.hasRemaining());
+      }
+
+      assertEquals(HashFunctions.sha256().hash(input), assembler.result().join());
+    }
+  }
+
+  @Test
+  void testConcurrent() throws Exception {
+    var input = randomBytes(1_000_000);
+    int chunkSize = 3000;
+    var chunks = new ArrayList<Integer>();
+    for (int offset = 0; offset < input.length; offset += chunkSize) {
+      chunks.add(offset);
+    }
+    Collections.shuffle(chunks, new Random(5));
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try (var assembler =
+        OrderedHashAssembler.of(HashFunctions.sha256(), input.length, 100_000)) {
+      var futures = new ArrayList<Future<?>>();
+      for (int offset : chunks) {
+        futures.add(executor.submit(() -> {
+          int length = Math.min(chunkSize, input.length - offset);
+          assembler.accept(offset, ByteBuffer.wrap(input, offset, length));
+          return null;
+        }));
+      }
+      for (var future : futures) {
+        future.get();
+      }
+
+      assertEquals(HashFunctions.sha256().hash(input), assembler.result().join());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void testEmpty() {
+    var assembler = OrderedHashAssembler.of(HashFunctions.sha256(), 0, 0);
+
+    assertEquals(HashFunctions.sha256().hash(new byte[0]), assembler.result().join());
+  }
+
+  @Test
+  void testChunkOutsideObject() {
+    var assembler = OrderedHashAssembler.of(HashFunctions.sha256(), 10, 0);
+
+    assertThrows(IllegalArgumentException.class,
+        () -> assembler.accept(5, ByteBuffer.allocate(6)));
+    assertThrows(IllegalArgumentException.class,
+        () -> assembler.accept(-1, ByteBuffer.allocate(1)));
+  }
+
+  @Test
+  void testCloseCancels() throws IOException {
+    var assembler = OrderedHashAssembler.of(HashFunctions.sha256(), 10, 0);
+    assembler.accept(5, ByteBuffer.allocate(5));
+
+    assembler.close();
+
+    assertThrows(CancellationException.class, () -> assembler.result().join());
+    assertThrows(IllegalStateException.class,
+        () -> assembler.accept(0, ByteBuffer.allocate(5)));
+  }
+}
@@ -0,0 +1,79 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for known PBKDF2-HMAC-SHA-256 input-output pairs.
+ */
+class Pbkdf2Test {
+  private static void testDerive(
+      String password, String salt, int iterations, int keyLength, String expectedKey) {
+    byte[] key = Pbkdf2.hmacSha256(
+        password.getBytes(StandardCharsets.UTF_8),
+        salt.getBytes(StandardCharsets.UTF_8),
+        iterations,
+        keyLength
+    );
+    assertEquals(expectedKey, HexFormat.of().formatHex(key));
+  }
+
+  private static String jdkDerive(String password, String salt, int iterations, int keyLength)
+      throws Exception {
+    var spec = new PBEKeySpec(
+        password.toCharArray(), salt.getBytes(StandardCharsets.UTF_8), iterations, 8 * keyLength);
+    var factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+    return HexFormat.of().formatHex(factory.generateSecret(spec).getEncoded());
+  }
+
+  /*
+   * The tests prefixed rfc are from https://www.rfc-editor.org/rfc/rfc7914#section-11
+   */
+
+  @Test
+  void testRfcOneIteration() {
+    testDerive(
+        "passwd", "salt", 1, 64,
+        "55ac046e56e3089fec1691c22544b605f94185216dde0465e68b9d57c20dacbc"
+            + "49ca9cccf179b645991664b39d77ef317c71b845b1e30bd509112041d3a19783"
+    );
+  }
+
+  @Test
+  void testRfcManyIterations() {
+    testDerive(
+        "Password", "NaCl", 80000, 64,
+        "4ddcd8f60b98be21830cee5ef22701f9641a4418d04c0414aeff08876b34ab56"
+            + "a1d425a1225833549adb841b51c9b3176a272bdebba1d078478f62b397f33c8d"
+    );
+  }
+
+  /*
+   * Expected keys for these tests were computed with the JDK's PBKDF2WithHmacSHA256.
+   */
+
+  @Test
+  void testPartialBlock() throws Exception {
+    testDerive("password", "salt", 2, 20, jdkDerive("password", "salt", 2, 20));
+  }
+
+  @Test
+  void testLongPasswordAndSalt() throws Exception {
+    var password = "p".repeat(100);
+    var salt = "s".repeat(120);
+    testDerive(password, salt, 1000, 100, jdkDerive(password, salt, 1000, 100));
+  }
+
+  @Test
+  void testInvalidArguments() {
+    var password = new byte[1];
+    var salt = new byte[1];
+    assertThrows(IllegalArgumentException.class, () -> Pbkdf2.hmacSha256(password, salt, 0, 32));
+    assertThrows(IllegalArgumentException.class, () -> Pbkdf2.hmacSha256(password, salt, 1, 0));
+  }
+}
@@ -0,0 +1,155 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class ShardRouterTest {
+  private static final int KEYS = 20000;
+
+  private static List<String> shards(int count) {
+    return IntStream.range(0, count).mapToObj(i -> "shard-" + i).collect(Collectors.toList());
+  }
+
+  private static Map<String, Double> weights(List<String> shards) {
+    var weights = new LinkedHashMap<String, Double>();
+    shards.forEach(shard -> weights.put(shard, 1.0));
+    return weights;
+  }
+
+  private static byte[] key(int i) {
+    return ByteBuffer.allocate(4).putInt(i).array();
+  }
+
+  private static List<ShardRouter<String>> routers(List<String> shards) {
+    var function = HashFunctions.sha256();
+    return List.of(
+        ShardRouter.jump(function, shards),
+        ShardRouter.rendezvous(function, weights(shards)),
+        ShardRouter.ring(function, shards, 100)
+    );
+  }
+
+  /**
+   * Counts the keys routed differently by two routers, and checks that every key which moved went
+   * to or from a shard which only one of them has.
+   */
+  private static int countMoved(ShardRouter<String> before, ShardRouter<String> after) {
+    int moved = 0;
+    for (int i = 0; i < KEYS; i++) {
+      String from = before.route(key(i));
+      String to = after.route(key(i));
+      if (!from.equals(to)) {
+        moved++;
+        assertTrue(!after.shards().contains(from) || !before.shards().contains(to));
+      }
+    }
+    return moved;
+  }
+
+  @Test
+  void testConsistent() {
+    for (var router : routers(shards(10))) {
+      for (int i = 0; i < 100; i++) {
+        assertEquals(router.route(key(i)), router.route(key(i)));
+        assertEquals(router.route((long) i), router.route((long) i));
+      }
+    }
+  }
+
+  @Test
+  void testBalanced() {
+    for (var router : routers(shards(10))) {
+      var counts = new HashMap<String, Integer>();
+      for (int i = 0; i < KEYS; i++) {
+        counts.merge(router.route((long) i), 1, Integer::sum);
+      }
+
+      assertEquals(10, counts.size(), router.toString());
+      for (int count : counts.values()) {
+        assertTrue(count > KEYS / 10 * 0.7 && count < KEYS / 10 * 1.3, router + ": " + count);
+      }
+    }
+  }
+
+  @Test
+  void testAddShardMovesFewKeys() {
+    var before = routers(shards(10));
+    var after = routers(shards(11));
+
+    for (int i = 0; i < before.size(); i++) {
+      int moved = countMoved(before.get(i), after.get(i));
+      // Ideally 1/11 of the keys move
+      assertTrue(moved > KEYS / 11 * 0.7 && moved < KEYS / 11 * 1.3, after.get(i) + ": " + moved);
+    }
+  }
+
+  @Test
+  void testRemoveShardMovesOnlyItsKeys() {
+    var shards = shards(10);
+    var remaining = shards.subList(0, 9);
+    var function = HashFunctions.sha256();
+
+    countMoved(
+        ShardRouter.rendezvous(function, weights(shards)),
+        ShardRouter.rendezvous(function, weights(remaining))
+    );
+    countMoved(ShardRouter.ring(function, shards, 100), ShardRouter.ring(function, remaining, 100));
+  }
+
+  @Test
+  void testRendezvousWeights() {
+    var weights = Map.of("light", 1.0, "heavy", 3.0);
+    var router = ShardRouter.rendezvous(HashFunctions.sha256(), weights);
+
+    long heavy = IntStream.range(0, KEYS).filter(i -> router.route(key(i)).equals("heavy")).count();
+
+    assertTrue(heavy > KEYS * 0.7 && heavy < KEYS * 0.8, "heavy: " + heavy);
+  }
+
+  @Test
+  void testCached() {
+    var router = ShardRouter.ring(HashFunctions.sha256(), shards(10), 100);
+    var cached = router.cached(64);
+
+    for (int round = 0; round < 2; round++) {
+      for (int i = 0; i < 1000; i++) {
+        assertEquals(router.route(key(i)), cached.route(key(i)));
+        assertEquals(router.route((long) i), cached.route((long) i));
+      }
+    }
+    assertEquals(router.shards(), cached.shards());
+  }
+
+  @Test
+  void testCachedCopiesKey() {
+    var router = ShardRouter.jump(HashFunctions.sha256(), shards(1000)).cached(16);
+    var key = key(1);
+    var expected = router.route(key);
+
+    key[3] = 2;
+
+    assertEquals(router.route(key(2)), router.route(key));
+    assertEquals(expected, router.route(key(1)));
+  }
+
+  @Test
+  void testInvalidArguments() {
+    var function = HashFunctions.sha256();
+
+    assertThrows(IllegalArgumentException.class, () -> ShardRouter.jump(function, List.of()));
+    assertThrows(IllegalArgumentException.class,
+        () -> ShardRouter.rendezvous(function, Map.of("a", 0.0)));
+    assertThrows(IllegalArgumentException.class,
+        () -> ShardRouter.ring(function, List.of("a"), 0));
+    assertThrows(IllegalArgumentException.class,
+        () -> ShardRouter.jump(function, List.of("a")).cached(0));
+  }
+}
@@ -0,0 +1,122 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for known SipHash input-output pairs.
+ * <p>
+ * The SipHash-2-4 vectors are from the <a href="https://github.com/veorq/SipHash">reference
+ * implementation</a>, which hashes the messages {@code 00 01 02 ...} with the key
+ * {@code 00 01 02 ... 0f}.
+ */
+class SipHashFunctionTest {
+  private static final byte[] KEY = sequence(SipHashFunction.KEY_LENGTH);
+
+  private static byte[] sequence(int length) {
+    var bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = (byte) i;
+    }
+    return bytes;
+  }
+
+  @Test
+  void testSipHash24Vectors() {
+    var function = HashFunctions.sipHash24(KEY);
+
+    assertEquals("310e0edd47db6f72", function.hash(sequence(0)).hex());
+    assertEquals("fd67dc93c539f874", function.hash(sequence(1)).hex());
+    assertEquals("5a4fa9d909806c0d", function.hash(sequence(2)).hex());
+    assertEquals("37d1018bf50002ab", function.hash(sequence(7)).hex());
+    assertEquals("6224939a79f5f593", function.hash(sequence(8)).hex());
+    assertEquals("e545be4961ca29a1", function.hash(sequence(15)).hex());
+    assertEquals("724506eb4c328a95", function.hash(sequence(63)).hex());
+  }
+
+  @Test
+  void testSipHash13() {
+    var function = HashFunctions.sipHash13(KEY);
+
+    assertEquals("SipHash-1-3", function.name());
+    assertEquals("dcc40f055801acab", function.hash(sequence(0)).hex());
+    assertEquals("5699512a6dd820d3", function.hash(sequence(15)).hex());
+  }
+
+  @Test
+  void testHashToLongMatchesDigest() {
+    var function = HashFunctions.sipHash24(KEY);
+    for (int length = 0; length < 40; length++) {
+      var input = sequence(length);
+      var digest = function.hash(input).bytes();
+
+      assertEquals(Long.reverseBytes(ByteBuffer.wrap(digest).getLong()),
+          function.hashToLong(input), "length " + length);
+    }
+    assertEquals(0xa129ca6149be45e5L, function.hashToLong(sequence(15)));
+  }
+
+  @Test
+  void testHashToLongSubArray() {
+    var function = HashFunctions.sipHash13(KEY);
+    var input = sequence(30);
+
+    assertEquals(function.hashToLong(sequence(9)), function.hashToLong(input, 0, 9));
+    assertNotEquals(function.hashToLong(sequence(9)), function.hashToLong(input, 1, 9));
+  }
+
+  @Test
+  void testHashLong() {
+    var function = HashFunctions.sipHash24(KEY);
+    var random = new Random(1);
+    for (int i = 0; i < 100; i++) {
+      long value = random.nextLong();
+
+      assertEquals(function.hashToLong(ByteBuffer.allocate(8).putLong(value).array()),
+          function.hashLong(value));
+    }
+  }
+
+  @Test
+  void testIncremental() {
+    var function = HashFunctions.sipHash24(KEY);
+    var input = sequence(63);
+    for (int split = 0; split <= input.length; split++) {
+      var hasher = function.init();
+      hasher.update(input, 0, split).update(input, split, input.length - split);
+
+      assertEquals("724506eb4c328a95", hasher.digest().hex(), "split at " + split);
+    }
+  }
+
+  @Test
+  void testPutLongUnaligned() {
+    var function = HashFunctions.sipHash13(KEY);
+    for (int prefix = 0; prefix < 8; prefix++) {
+      var expected = function.init().update(sequence(prefix))
+          .update(new byte[] {1, 2, 3, 4, 5, 6, 7, 8}).digest();
+
+      var digest = function.init().update(sequence(prefix)).putLong(0x0102030405060708L).digest();
+
+      assertEquals(expected, digest, "prefix " + prefix);
+    }
+  }
+
+  @Test
+  void testKeyMatters() {
+    var otherKey = KEY.clone();
+    otherKey[0] ^= 1;
+
+    assertNotEquals(HashFunctions.sipHash24(KEY).hashLong(1),
+        HashFunctions.sipHash24(otherKey).hashLong(1));
+  }
+
+  @Test
+  void testKeyLength() {
+    assertThrows(IllegalArgumentException.class, () -> HashFunctions.sipHash24(new byte[8]));
+    assertThrows(NullPointerException.class, () -> HashFunctions.sipHash13(null));
+  }
+}
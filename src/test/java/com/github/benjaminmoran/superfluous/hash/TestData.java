@@ -0,0 +1,35 @@
+package com.github.benjaminmoran.superfluous.hash;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Deterministic inputs shared by the tests in this package.
+ */
+final class TestData {
+  private TestData() {
+  }
+
+  /**
+   * {@return {@code length} pseudorandom bytes, seeded by the length}
+   */
+  static byte[] randomBytes(int length) {
+    return randomBytes(length, length);
+  }
+
+  /**
+   * {@return {@code length} pseudorandom bytes from the given seed}
+   */
+  static byte[] randomBytes(int length, long seed) {
+    var bytes = new byte[length];
+    new Random(seed).nextBytes(bytes);
+    return bytes;
+  }
+
+  /**
+   * {@return a distinct SHA-256 digest for each {@code i}}
+   */
+  static Digest digestOf(int i) {
+    return HashFunctions.sha256().hash(ByteBuffer.allocate(4).putInt(i).array());
+  }
+}